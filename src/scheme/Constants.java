@@ -9,4 +9,45 @@ public class Constants {
     public static String BATCH_ENCODER_INCORRECT_NUMBER_OF_VALUES_EXCEPTION =
             "In order to perform encoding correctly the values to be encoded must be as many " +
                     "as the degree of the of the ring in which they are to be transformed!";
+
+    public static String INCORRECT_CIPHERTEXT_SIZE_EXCEPTION =
+            "Ciphertexts of size 3 must be relinearized before performing %s!";
+
+    public static String INCORRECT_INNER_PRODUCT_OPERANDS_EXCEPTION =
+            "Inner product requires two non empty vectors of the same length, but lengths %d and %d were provided!";
+
+    public static String INCORRECT_EXPONENT_EXCEPTION =
+            "Incorrect value %d for exponent provided! Exponent must be positive.";
+
+    public static String INCORRECT_POLYNOMIAL_COEFFICIENTS_EXCEPTION =
+            "At least one coefficient must be provided for polynomial evaluation!";
+
+    public static String NON_MATCHING_CIPHERTEXT_MODULI_EXCEPTION =
+            "Ciphertexts with different moduli %d and %d cannot be combined! Switch them to the same modulus first.";
+
+    public static String INCORRECT_MODULUS_CHAIN_EXCEPTION =
+            "Incorrect modulus chain provided! Each modulus must be greater than the plaintext modulus " +
+                    "and a proper divisor of the previous one.";
+
+    public static String MODULUS_CANNOT_BE_SWITCHED_EXCEPTION =
+            "Modulus %d is not followed by a smaller modulus in the modulus chain!";
+
+    public static String GALOIS_KEYS_NOT_FOUND_EXCEPTION =
+            "No Galois keys were generated for Galois element %d!";
+
+    public static String INCORRECT_MATRIX_DIMENSIONS_EXCEPTION =
+            "Incorrect matrix provided! The matrix must be non empty with at most %d rows and columns.";
+
+    public static String PLAINTEXT_MODULUS_TOO_LARGE_EXCEPTION =
+            "Plaintext modulus %d does not fit in a long value, slots must be decoded as BigInteger values!";
+
+    public static String INCORRECT_ERROR_STANDARD_DEVIATION_EXCEPTION =
+            "Incorrect error standard deviation %s provided! Standard deviation must be positive, or 0 for the triangle distribution.";
+
+    public static String INCORRECT_MASK_POOL_CAPACITY_EXCEPTION =
+            "Incorrect capacity %d for the pool of precomputed masks provided! Capacity must be positive.";
+
+    public static String RELINEARIZATION_KEYS_STREAMED_EXCEPTION =
+            "The relinearization keys were written to a stream and are not kept in memory! " +
+                    "Read them back with RelinearizationKeys.read instead of generating a different key set.";
 }
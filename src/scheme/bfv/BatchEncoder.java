@@ -16,17 +16,40 @@ import static scheme.Constants.BATCH_ENCODER_INCORRECT_NUMBER_OF_VALUES_EXCEPTIO
  * on the roots of X^d +1, the vector is then transformed into a Polynomial of the quotient ring.
  * An optimization with Number Theoretic Transform is obtained, where d integers are encoded into a d-length vector,
  * where d is the degree of the quotient polynomial ring - Zq[X]/(X^d+1).
+ * The slots are arranged as a matrix of 2 rows and d/2 columns: the slot in row r and column c holds the evaluation
+ * on the root psi^(3^c) for the first row and psi^(-3^c) for the second one, psi being a primitive 2d-th root of unity modulo t.
+ * With this arrangement the Galois automorphism X -> X^(3^k) rotates both rows cyclically by k columns
+ * and X -> X^(2d-1) swaps the rows, which is what the rotations of the Evaluator rely on.
  */
 public class BatchEncoder {
 
     private int polynomialDegree;
     private BigInteger plaintextModulus;
     private NumberTheoreticTransform numberTheoreticTransform;
+    // the index of the evaluation in the output of the transformation corresponding to each slot
+    private int[] slotIndices;
 
     public BatchEncoder(Parameters parameters) {
         this.polynomialDegree = parameters.getPolynomialDegree();
         this.plaintextModulus = parameters.getPlaintextModulus();
         this.numberTheoreticTransform = new NumberTheoreticTransform(BigInteger.valueOf(polynomialDegree), plaintextModulus);
+        initializeSlotIndices();
+    }
+
+    /**
+     * The transformation evaluates on psi^(2j+1) at index j, so the slot of the root psi^e is at index (e-1)/2.
+     */
+    private void initializeSlotIndices() {
+        int rowSize = this.polynomialDegree / 2;
+        int cyclotomicOrder = 2 * this.polynomialDegree;
+        this.slotIndices = new int[this.polynomialDegree];
+
+        long power = 1;
+        for (int column = 0; column < rowSize; column++) {
+            slotIndices[column] = (int) ((power - 1) / 2);
+            slotIndices[rowSize + column] = (int) ((cyclotomicOrder - power - 1) / 2);
+            power = power * 3 % cyclotomicOrder;
+        }
     }
 
 
@@ -43,7 +66,12 @@ public class BatchEncoder {
             throw  new IllegalArgumentException(BATCH_ENCODER_INCORRECT_NUMBER_OF_VALUES_EXCEPTION);
         }
 
-        BigInteger[] transformedValues = this.numberTheoreticTransform.inverseTransform(toEncode);
+        BigInteger[] evaluations = new BigInteger[this.polynomialDegree];
+        for (int i = 0; i < this.polynomialDegree; i++) {
+            evaluations[slotIndices[i]] = toEncode[i];
+        }
+
+        BigInteger[] transformedValues = this.numberTheoreticTransform.inverseTransform(evaluations);
         Polynomial plaintextPolynomial = new Polynomial(this.polynomialDegree, transformedValues);
         return new Plaintext(plaintextPolynomial, this.plaintextModulus);
     }
@@ -55,10 +83,28 @@ public class BatchEncoder {
      * @return a list of values
      */
     public BigInteger[] decode(Plaintext toDecode) {
-        BigInteger[] decodedValues = this.numberTheoreticTransform.forwardTransform(toDecode.getPolynomial().getCoefficients());
+        BigInteger[] evaluations = this.numberTheoreticTransform.forwardTransform(toDecode.getPolynomial().getCoefficients());
+        BigInteger[] decodedValues = new BigInteger[this.polynomialDegree];
+
+        for (int i = 0; i < decodedValues.length; i++) {
+            decodedValues[i] = AlgebraicOperations.takeRemainder(evaluations[slotIndices[i]], this.plaintextModulus);
+        }
+
+        return decodedValues;
+    }
+
+    /**
+     * Decodes the coefficients of a plaintext polynomial directly into slot values,
+     * without creating the intermediate Plaintext and Polynomial instances.
+     *
+     * @param coefficients the coefficients reduced modulo t, the plaintext modulus must fit in a long value.
+     */
+    long[] decodeCoefficients(BigInteger[] coefficients) {
+        BigInteger[] evaluations = this.numberTheoreticTransform.forwardTransform(coefficients);
+        long[] decodedValues = new long[this.polynomialDegree];
 
         for (int i = 0; i < decodedValues.length; i++) {
-            decodedValues[i] = AlgebraicOperations.takeRemainder(decodedValues[i], this.plaintextModulus);
+            decodedValues[i] = evaluations[slotIndices[i]].longValue();
         }
 
         return decodedValues;
@@ -1,54 +1,121 @@
 package scheme.bfv;
 
+import utils.optimizations.ChineseRemainderTheorem;
+import utils.optimizations.ScaleAndRound;
 import utils.structures.Ciphertext;
 import utils.structures.Plaintext;
 import utils.structures.Polynomial;
 import utils.structures.SecretKey;
+import utils.structures.TransformedPolynomial;
 
-import java.math.BigDecimal;
 import java.math.BigInteger;
 
+import static scheme.Constants.PLAINTEXT_MODULUS_TOO_LARGE_EXCEPTION;
+
 /**
  * A class encapsulating the logic for decryption an encrypted message.
  * More precisely transforming an element of the Ciphertext space with modulus q - Zt[X]/(X^d+1)
  * to an element of the Plaintext space with modulus t - Zt[X]/(X^d+1)
+ * The powers s and s^2 of the secret key are transformed once on construction,
+ * so decryption of a ciphertext of any size is a single inner product in evaluation form.
  */
 public class Decryptor {
 
     private int polynomialDegree;
     private BigInteger plaintextModulus;
-    private BigInteger ciphertextModulus;
-    private BigDecimal scalingFactor;
+    private Parameters parameters;
     private SecretKey secretKey;
+    private ChineseRemainderTheorem chineseRemainderTheorem;
+    // the powers s^1, s^2 of the secret key in evaluation form
+    private TransformedPolynomial[] secretPowers;
+    // created on the first call of decryptAndDecode, since batching is not supported for every plaintext modulus
+    private volatile BatchEncoder encoder;
 
     public Decryptor(Parameters parameters, SecretKey secretKey) {
         this.polynomialDegree = parameters.getPolynomialDegree();
-        this.ciphertextModulus = parameters.getCiphertextModulus();
         this.plaintextModulus = parameters.getPlaintextModulus();
-        this.scalingFactor = parameters.getScalingFactor();
+        this.parameters = parameters;
         this.secretKey = secretKey;
+        this.chineseRemainderTheorem = parameters.getChineseRemainderTheorem();
+
+        TransformedPolynomial secret = TransformedPolynomial.forwardTransform(secretKey.getSecret(), this.chineseRemainderTheorem);
+        this.secretPowers = new TransformedPolynomial[] {secret, secret.multiply(secret)};
     }
 
 
+    /**
+     * Decrypts a ciphertext of size 2 or 3. The third part of a ciphertext of size 3 is multiplied by the squared secret,
+     * in the same way as the extra term.
+     * The ciphertext is decrypted with respect to its own modulus, so ciphertexts switched to a smaller modulus are supported.
+     *
+     * @param extraTerm an additional term multiplied by the squared secret, can be null.
+     */
     public Plaintext decrypt(Ciphertext ciphertext, Polynomial extraTerm) {
+        BigInteger ciphertextModulus = ciphertext.getModulus();
+
+        Polynomial intermediateResult = innerProduct(ciphertext, extraTerm)
+                .inverseTransform(this.chineseRemainderTheorem)
+                .getCoefficientsMod(ciphertextModulus);
 
-        Polynomial c0 = ciphertext.getEncryptionPolynomial();
-        Polynomial c1= ciphertext.getAdditionalComponent();
+        // round(t*x/q) is computed exactly with integer arithmetic, see ScaleAndRound
+        intermediateResult = intermediateResult.scaleAndRound(parameters.getScaling(ciphertextModulus), this.plaintextModulus);
+
+        return new Plaintext(intermediateResult, this.plaintextModulus);
+    }
 
-        Polynomial intermediateResult = c0.add(c1.multiply(secretKey.getSecret(), ciphertextModulus), ciphertextModulus);
+    /**
+     * Decrypts a ciphertext of size 2 or 3 and decodes the result into the slot values of the batch encoding.
+     * The coefficients are scaled, reduced and decoded in place, so no intermediate Plaintext is created.
+     *
+     * @throws UnsupportedOperationException if the plaintext modulus does not fit in a long value.
+     */
+    public long[] decryptAndDecode(Ciphertext ciphertext) {
+        if(this.plaintextModulus.bitLength() >= Long.SIZE) {
+            throw new UnsupportedOperationException(String.format(PLAINTEXT_MODULUS_TOO_LARGE_EXCEPTION, this.plaintextModulus));
+        }
+
+        BigInteger ciphertextModulus = ciphertext.getModulus();
+        ScaleAndRound scaling = parameters.getScaling(ciphertextModulus);
+
+        BigInteger[] coefficients = innerProduct(ciphertext, null)
+                .inverseTransform(this.chineseRemainderTheorem)
+                .getCoefficients();
+
+        for (int i = 0; i < coefficients.length; i++) {
+            coefficients[i] = scaling.apply(coefficients[i].mod(ciphertextModulus)).mod(this.plaintextModulus);
+        }
+
+        return getEncoder().decodeCoefficients(coefficients);
+    }
+
+    private TransformedPolynomial innerProduct(Ciphertext ciphertext, Polynomial extraTerm) {
+        BigInteger ciphertextModulus = ciphertext.getModulus();
+        TransformedPolynomial[] components = ciphertext.getTransformedComponents(this.chineseRemainderTheorem);
+
+        // c0 + c1*s + c2*s^2 is accumulated in evaluation form and transformed back once
+        TransformedPolynomial innerProduct = components[0];
+        for (int i = 1; i < components.length; i++) {
+            innerProduct = innerProduct.add(components[i].multiply(this.secretPowers[i - 1]));
+        }
 
         //an additional check to ensure that decryption works correctly even if realization did not work
         if(extraTerm!=null) {
-            Polynomial squaredSecret = this.secretKey.getSecret()
-                    .multiply(this.secretKey.getSecret(), this.ciphertextModulus);
-            intermediateResult = intermediateResult
-                    .add(squaredSecret.multiply(extraTerm, this.ciphertextModulus), this.ciphertextModulus);
+            TransformedPolynomial transformedExtraTerm = TransformedPolynomial.forwardTransform(
+                    extraTerm.getCoefficientsMod(ciphertextModulus), this.chineseRemainderTheorem);
+            innerProduct = innerProduct.add(transformedExtraTerm.multiply(this.secretPowers[1]));
         }
 
-        intermediateResult = intermediateResult
-                .divideByNonIntegerScalar(scalingFactor, null)
-                .getCoefficientsMod(this.plaintextModulus);
+        return innerProduct;
+    }
 
-        return new Plaintext(intermediateResult, this.plaintextModulus);
+    private BatchEncoder getEncoder() {
+        BatchEncoder result = this.encoder;
+
+        if (result == null) {
+            result = new BatchEncoder(this.parameters);
+            this.encoder = result;
+        }
+
+        return result;
     }
 }
@@ -1,16 +1,34 @@
 package scheme.bfv;
 
+import utils.operations.CounterModeGenerator;
 import utils.operations.SamplingOperations;
+import utils.optimizations.ChineseRemainderTheorem;
 import utils.structures.Ciphertext;
 import utils.structures.Plaintext;
 import utils.structures.Polynomial;
 import utils.structures.PublicKey;
+import utils.structures.TransformedPolynomial;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static scheme.Constants.INCORRECT_MASK_POOL_CAPACITY_EXCEPTION;
 
 /**
  * A class encapsulating the logic for encryption a message.
  * More precisely transforming an element of the Plaintext space with modulus t - Zt[X]/(X^d+1)
  * to an element of the Ciphertext space with modulus q - Zt[X]/(X^d+1)
+ * Batches of messages can be encrypted concurrently on a provided executor,
+ * each task sampling with the random generator of its own thread.
+ * The masks (e1 + p0*u, e2 + p1*u), which do not depend on the message, can be precomputed by a background thread
+ * into a bounded pool, so that an encryption only adds the scaled message to a mask taken from the pool.
  */
 public class Encryptor {
 
@@ -18,34 +36,163 @@ public class Encryptor {
     private BigInteger modulus;
     private PublicKey publicKey;
     private BigInteger delta;
+    private Parameters parameters;
+    private ChineseRemainderTheorem chineseRemainderTheorem;
+    private Executor executor;
+    // each precomputed mask is taken from the pool exactly once, null if no masks are precomputed
+    private volatile BlockingQueue<Polynomial[]> maskPool;
+    private Thread maskProducer;
 
     private Ciphertext encrypt(Plaintext message,Polynomial u, Polynomial e1, Polynomial e2) {
-        Polynomial p0 = this.publicKey.getPk0();
-        Polynomial p1 = this.publicKey.getPk1();
+        return encrypt(message, computeMask(u, e1, e2));
+    }
+
+    private Ciphertext encrypt(Plaintext message, Polynomial[] mask) {
+        // round(q*m/t) instead of delta*m, so that (q mod t)*m is not added to the noise
+        Polynomial scaledMessage = this.parameters.scaleMessage(message.getPolynomial(), this.modulus);
+
+        Polynomial firstPart = mask[0].add(scaledMessage, this.modulus);
 
-        Polynomial scaledMessage = message.getPolynomial().multiplyByScalar(delta, this.modulus);
+        return new Ciphertext(firstPart, mask[1], this.delta, this.modulus);
+    }
+
+    /**
+     * Computes the part of the encryption independent of the message - (e1 + p0*u, e2 + p1*u).
+     * Both public key products share a single forward transformation of the mask u,
+     * since the public key itself is kept in evaluation form.
+     */
+    private Polynomial[] computeMask(Polynomial u, Polynomial e1, Polynomial e2) {
+        TransformedPolynomial[] transformedKey = this.publicKey.getTransformedKey(this.chineseRemainderTheorem);
+        TransformedPolynomial transformedMask = TransformedPolynomial.forwardTransform(u, this.chineseRemainderTheorem);
 
-        Polynomial firstPart = e1.add(p0.multiply(u, this.modulus), this.modulus).add(scaledMessage, this.modulus);
-        Polynomial secondPart = e2.add(p1.multiply(u, this.modulus), this.modulus);
+        Polynomial p0u = transformedKey[0].multiply(transformedMask).inverseTransform(this.chineseRemainderTheorem);
+        Polynomial p1u = transformedKey[1].multiply(transformedMask).inverseTransform(this.chineseRemainderTheorem);
 
-        return new Ciphertext(firstPart, secondPart, this.delta, this.modulus);
+        return new Polynomial[] {e1.add(p0u, this.modulus), e2.add(p1u, this.modulus)};
+    }
+
+    private Polynomial[] sampleMask(Random random) {
+        Polynomial u = new Polynomial(polynomialDegree, SamplingOperations.triangleSample(this.polynomialDegree, random));
+        Polynomial e1 = new Polynomial(polynomialDegree, this.parameters.sampleError(random));
+        Polynomial e2 = new Polynomial(polynomialDegree, this.parameters.sampleError(random));
+
+        return computeMask(u, e1, e2);
+    }
+
+    private Polynomial[] pollPrecomputedMask() {
+        BlockingQueue<Polynomial[]> pool = this.maskPool;
+        return pool != null ? pool.poll() : null;
     }
 
 
     public Encryptor(Parameters parameters, PublicKey publicKey) {
+        this(parameters, publicKey, null);
+    }
+
+    /**
+     * Initializes an encryptor, which encrypts the messages of encryptAll concurrently.
+     *
+     * @param executor executes the encryption of each message, e.g. a fixed thread pool. If null the messages are encrypted sequentially.
+     */
+    public Encryptor(Parameters parameters, PublicKey publicKey, Executor executor) {
+        this.executor = executor;
         this.publicKey = publicKey;
         this.polynomialDegree = parameters.getPolynomialDegree();
         this.modulus = parameters.getCiphertextModulus();
-        this.delta = parameters.getScalingFactor().toBigInteger();
+        this.delta = parameters.getDelta();
+        this.parameters = parameters;
+        this.chineseRemainderTheorem = parameters.getChineseRemainderTheorem();
+
+        // the key is transformed once when the encryptor is created instead of on every encryption
+        this.publicKey.getTransformedKey(this.chineseRemainderTheorem);
     }
 
+    /**
+     * Encrypts a message with a precomputed mask if one is available and computes the mask on the spot otherwise.
+     */
     public Ciphertext encrypt(Plaintext message) {
+        Polynomial[] precomputedMask = pollPrecomputedMask();
+
+        return encrypt(message, precomputedMask != null ? precomputedMask : sampleMask(CounterModeGenerator.current()));
+    }
+
+    /**
+     * Encrypts a list of messages, concurrently if an executor is configured.
+     *
+     * @return the ciphertexts in the order of the messages.
+     */
+    public List<Ciphertext> encryptAll(List<Plaintext> messages) {
+        return encryptAll(messages.stream()).collect(Collectors.toList());
+    }
 
-        Polynomial u = new Polynomial(polynomialDegree, SamplingOperations.triangleSample(this.polynomialDegree));
-        Polynomial e1 = new Polynomial(polynomialDegree, SamplingOperations.triangleSample(this.polynomialDegree));
-        Polynomial e2 = new Polynomial(polynomialDegree, SamplingOperations.triangleSample(this.polynomialDegree));
+    /**
+     * Encrypts a stream of messages, concurrently if an executor is configured.
+     * All messages are submitted when this method is called and the returned stream waits for each ciphertext in turn.
+     *
+     * @return the ciphertexts in the order of the messages.
+     */
+    public Stream<Ciphertext> encryptAll(Stream<Plaintext> messages) {
+        if (this.executor == null) {
+            return messages.map(this::encrypt).collect(Collectors.toList()).stream();
+        }
 
-        return encrypt(message, u, e1, e2);
+        List<CompletableFuture<Ciphertext>> futures = messages
+                .map(message -> CompletableFuture.supplyAsync(() -> encrypt(message), this.executor))
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        return futures.stream().map(Futures::join);
+    }
+
+    /**
+     * Starts a background thread with the lowest priority, which keeps the pool of precomputed masks filled.
+     * A previously started precomputation is stopped and its pool is discarded.
+     *
+     * @param poolCapacity the maximal number of precomputed masks kept in memory.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public synchronized void startMaskPrecomputation(int poolCapacity) {
+        if (poolCapacity <= 0) {
+            throw new IllegalArgumentException(String.format(INCORRECT_MASK_POOL_CAPACITY_EXCEPTION, poolCapacity));
+        }
+
+        stopMaskPrecomputation();
+
+        BlockingQueue<Polynomial[]> pool = new ArrayBlockingQueue<>(poolCapacity);
+        Thread producer = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    pool.put(sampleMask(CounterModeGenerator.current()));
+                }
+            } catch (InterruptedException e) {
+                // the precomputation was stopped
+            }
+        }, "encryption-mask-producer");
+
+        producer.setDaemon(true);
+        producer.setPriority(Thread.MIN_PRIORITY);
+
+        this.maskPool = pool;
+        this.maskProducer = producer;
+        producer.start();
+    }
+
+    /**
+     * Stops the background precomputation and discards the remaining precomputed masks.
+     */
+    public synchronized void stopMaskPrecomputation() {
+        if (this.maskProducer != null) {
+            this.maskProducer.interrupt();
+            this.maskProducer = null;
+        }
+        this.maskPool = null;
+    }
+
+    /**
+     * Returns the number of precomputed masks currently available in the pool.
+     */
+    public int getPrecomputedMaskCount() {
+        BlockingQueue<Polynomial[]> pool = this.maskPool;
+        return pool != null ? pool.size() : 0;
     }
 
     public Ciphertext encryptWithHammingWeight(Plaintext message, int hammingWeight) {
@@ -1,122 +1,938 @@
 package scheme.bfv;
 
 
+import utils.optimizations.ChineseRemainderTheorem;
+import utils.optimizations.ScaleAndRound;
 import utils.structures.Ciphertext;
+import utils.structures.Plaintext;
 import utils.structures.Polynomial;
+import utils.structures.TransformedPolynomial;
 
-import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static scheme.Constants.INCORRECT_CIPHERTEXT_SIZE_EXCEPTION;
+import static scheme.Constants.INCORRECT_EXPONENT_EXCEPTION;
+import static scheme.Constants.INCORRECT_INNER_PRODUCT_OPERANDS_EXCEPTION;
+import static scheme.Constants.INCORRECT_POLYNOMIAL_COEFFICIENTS_EXCEPTION;
+import static scheme.Constants.NON_MATCHING_CIPHERTEXT_MODULI_EXCEPTION;
 
 /**
  * A class encapsulating the necessary functionality to perform the homomorphic operations: addition and multiplication
- * with the relinearzation step afterwards.
+ * with the relinearzation step afterwards, which can also be deferred and applied once to a sum of products,
+ * and the rotations of the slots of batched messages through Galois automorphisms.
+ * Optionally the independent parts of a single multiplication (operand transforms, tensor products, key switching levels)
+ * are computed concurrently on a provided executor.
  */
 public class Evaluator {
 
+    // set while a task submitted by computeAll runs on the current thread
+    private static final ThreadLocal<Boolean> insideTask = ThreadLocal.withInitial(() -> false);
+
     private BigInteger plaintextModulus;
-    private BigInteger cipherTextModulus;
-    private BigDecimal scalingFactor;
+    private Parameters parameters;
+    private ChineseRemainderTheorem chineseRemainderTheorem;
+    private int accumulationCapacity;
+    private Executor executor;
 
     public Evaluator(Parameters parameters) {
+        this(parameters, null, 0);
+    }
+
+    /**
+     * Initializes an evaluator, which computes the independent parts of each multiplication and relinearization concurrently.
+     * For small polynomial degrees the overhead of scheduling the tasks outweighs the gain, so they are computed sequentially.
+     *
+     * @param executor executes the concurrent tasks, e.g. a fixed thread pool. If null all operations are sequential.
+     * @param parallelDegreeThreshold the smallest polynomial degree for which the concurrent mode is used.
+     */
+    public Evaluator(Parameters parameters, Executor executor, int parallelDegreeThreshold) {
         this.plaintextModulus = parameters.getPlaintextModulus();
-        this.cipherTextModulus = parameters.getCiphertextModulus();
-        this.scalingFactor = parameters.getScalingFactor();
+        this.parameters = parameters;
+        this.chineseRemainderTheorem = parameters.getChineseRemainderTheorem();
+        this.accumulationCapacity = parameters.getAccumulationCapacity();
+        this.executor = parameters.getPolynomialDegree() >= parallelDegreeThreshold ? executor : null;
     }
 
 
     /**
      * Performs homomomorphic addition on two ciphertexts by adding each of the corresponding part of the ciphertext polynomial tuple.
+     * Ciphertexts of size 3 are supported, the missing third part of a ciphertext of size 2 is treated as zero,
+     * so several products can be summed before a single relinearization.
      */
     public Ciphertext add(Ciphertext first, Ciphertext second) {
+        BigInteger modulus = commonModulus(List.of(first, second));
+
         Polynomial additionFirstPart = first.getEncryptionPolynomial()
-                .add(second.getEncryptionPolynomial(), this.cipherTextModulus);
+                .add(second.getEncryptionPolynomial(), modulus);
 
         Polynomial additionSecondPart = first.getAdditionalComponent()
-                .add(second.getAdditionalComponent(), this.cipherTextModulus);
+                .add(second.getAdditionalComponent(), modulus);
 
-        return  new Ciphertext(additionFirstPart, additionSecondPart, this.scalingFactor.toBigInteger(), this.cipherTextModulus);
-    }
+        if (first.getSize() == 2 && second.getSize() == 2) {
+            return  new Ciphertext(additionFirstPart, additionSecondPart, scalingFactor(modulus), modulus);
+        }
 
+        Polynomial additionThirdPart = first.getSize() == 2
+                ? second.getQuadraticComponent()
+                : second.getSize() == 2
+                    ? first.getQuadraticComponent()
+                    : first.getQuadraticComponent().add(second.getQuadraticComponent(), modulus);
+
+        return  new Ciphertext(additionFirstPart,
+                additionSecondPart,
+                additionThirdPart,
+                scalingFactor(modulus),
+                modulus,
+                false);
+    }
 
     /**
      * Performs homomomorphic subtraction on two ciphertexts by subtracting each of the corresponding part of the ciphertext polynomial tuple.
      * Since there is a possibility that the result is negative, smallMod operation should be performed instead of standard modular reduction
      * to fit the range [-q/2, q/2).
+     * Ciphertexts of size 3 are supported in the same way as in addition.
      */
     public Ciphertext subtract(Ciphertext first, Ciphertext second) {
+        BigInteger modulus = commonModulus(List.of(first, second));
+
         Polynomial additionFirstPart = first.getEncryptionPolynomial()
                 .subtract(second.getEncryptionPolynomial(), null)
-                .applySmallModularReduction(cipherTextModulus);
+                .applySmallModularReduction(modulus);
 
         Polynomial additionSecondPart = first.getAdditionalComponent()
                 .subtract(second.getAdditionalComponent(), null)
-                .applySmallModularReduction(cipherTextModulus);
+                .applySmallModularReduction(modulus);
+
+        if (first.getSize() == 2 && second.getSize() == 2) {
+            return  new Ciphertext(additionFirstPart,
+                    additionSecondPart,
+                    scalingFactor(modulus),
+                    modulus,
+                    true);
+        }
+
+        Polynomial additionThirdPart = first.getSize() == 2
+                ? second.getQuadraticComponent().reverseSign()
+                : second.getSize() == 2
+                    ? first.getQuadraticComponent()
+                    : first.getQuadraticComponent().subtract(second.getQuadraticComponent(), null);
 
         return  new Ciphertext(additionFirstPart,
                 additionSecondPart,
-                this.scalingFactor.toBigInteger(),
-                this.cipherTextModulus,
+                additionThirdPart.applySmallModularReduction(modulus),
+                scalingFactor(modulus),
+                modulus,
                 true);
     }
 
     /**
      * Performs homomomorphic multiplication on two ciphertexts.
-     * Each part of the first ciphertext polynomial tuple is multiplied with fast multiplication using FFT
+     * Each part of the first ciphertext polynomial tuple is multiplied in evaluation form
      * with each of the second ciphertext polynomial tuple (total of 4 polynomial multiplications).
+     * The evaluation forms are memoized on the ciphertexts, so an operand used repeatedly is transformed only once.
      * The result is consists of three parts and s then relinearized using an optimized relinearization technique based on
      * coefficient base decomposition.
      */
     public Ciphertext multiply(Ciphertext first, Ciphertext second, RelinearizationKeys relinearizationKeys) {
-        Polynomial c01 = first.getEncryptionPolynomial();
-        Polynomial c02 = second.getEncryptionPolynomial();
+        return relinearize(multiplyWithoutRelinearization(first, second), relinearizationKeys);
+    }
+
+    /**
+     * Performs homomomorphic multiplication on two ciphertexts of size 2 and returns the result of size 3 (c0, c1, c2)
+     * without relinearizing it. Results can be added together and relinearized once with relinearize,
+     * e.g. a sum of k products needs a single key switching instead of k.
+     *
+     * @throws UnsupportedOperationException if any of the ciphertexts is of size 3.
+     */
+    public Ciphertext multiplyWithoutRelinearization(Ciphertext first, Ciphertext second) {
+        return scaleTensor(tensorProduct(first, second), commonModulus(List.of(first, second)));
+    }
+
+    /**
+     * Performs homomorphic squaring of a ciphertext. Compared to multiply(ciphertext, ciphertext) only three products
+     * (c0*c0, c0*c1, c1*c1) are computed, the middle part being doubled, and a single operand is transformed.
+     */
+    public Ciphertext square(Ciphertext ciphertext, RelinearizationKeys relinearizationKeys) {
+        return relinearize(squareWithoutRelinearization(ciphertext), relinearizationKeys);
+    }
+
+    /**
+     * Performs homomorphic squaring of a ciphertext of size 2 and returns the result of size 3 without relinearizing it.
+     *
+     * @throws UnsupportedOperationException if the ciphertext is of size 3.
+     */
+    public Ciphertext squareWithoutRelinearization(Ciphertext ciphertext) {
+        TransformedPolynomial[] transformed = checkSize(ciphertext, "squaring").getTransformedComponents(this.chineseRemainderTheorem);
+
+        List<TransformedPolynomial> products = computeAll(List.of(
+                () -> transformed[0].multiply(transformed[0]),
+                () -> transformed[0].multiply(transformed[1]),
+                () -> transformed[1].multiply(transformed[1])));
+
+        return scaleTensor(new TransformedPolynomial[] {
+                products.get(0),
+                products.get(1).add(products.get(1)),
+                products.get(2)
+        }, ciphertext.getModulus());
+    }
+
+    /**
+     * Raises a ciphertext to a given positive power using square-and-multiply, so the multiplicative depth is about log2(exponent).
+     * The squares are relinearized, since each of them is the operand of the next squaring,
+     * while the accumulated product is relinearized only when it is needed as an operand again and once at the end.
+     *
+     * @throws IllegalArgumentException if the exponent is not positive.
+     */
+    public Ciphertext power(Ciphertext ciphertext, int exponent, RelinearizationKeys relinearizationKeys) {
+        if (exponent < 1) {
+            throw new IllegalArgumentException(String.format(INCORRECT_EXPONENT_EXCEPTION, exponent));
+        }
+
+        Ciphertext base = relinearize(ciphertext, relinearizationKeys);
+        Ciphertext result = null;
+
+        while (exponent > 0) {
+            if ((exponent & 1) == 1) {
+                result = result == null
+                        ? base
+                        : multiplyWithoutRelinearization(relinearize(result, relinearizationKeys), base);
+            }
+
+            exponent >>= 1;
+
+            if (exponent > 0) {
+                base = square(base, relinearizationKeys);
+            }
+        }
+
+        return relinearize(result, relinearizationKeys);
+    }
+
+    /**
+     * Multiplies a ciphertext by an integer scalar, which corresponds to multiplying each slot of the encrypted message by it.
+     * The scalar is taken in the range (-t/2, t/2] to keep the noise growth low, no relinearization is needed.
+     */
+    public Ciphertext multiplyByScalar(Ciphertext ciphertext, BigInteger scalar) {
+        BigInteger modulus = ciphertext.getModulus();
+        BigInteger centeredScalar = centerModPlaintextModulus(scalar);
+        Polynomial[] product = new Polynomial[ciphertext.getSize()];
+
+        for (int i = 0; i < product.length; i++) {
+            product[i] = ciphertext.getComponent(i).multiplyByScalar(centeredScalar, modulus);
+        }
+
+        return product.length == 2
+                ? new Ciphertext(product[0], product[1], scalingFactor(modulus), modulus)
+                : new Ciphertext(product[0], product[1], product[2],
+                        scalingFactor(modulus), modulus, false);
+    }
+
+    /**
+     * Evaluates a public polynomial sum(coefficients[i] * x^i) on the encrypted slots using the Paterson-Stockmeyer algorithm.
+     * The baby steps x^1, ..., x^(k-1) and the giant steps x^k, x^(2k), x^(4k), ... are computed with non-scalar multiplications,
+     * where k is a power of two close to the square root of the degree. The polynomial is then split in blocks of k coefficients,
+     * each of which is evaluated with scalar multiplications of the baby steps only, and the blocks are combined recursively
+     * as p = low + x^(k * 2^i) * high. This takes O(sqrt(degree)) non-scalar multiplications and depth O(log(degree)),
+     * compared to degree multiplications and depth of Horner's scheme.
+     * Relinearization of the combined blocks is deferred until they are used as an operand again.
+     *
+     * @param coefficients the coefficients of the polynomial modulo t, starting from the constant term.
+     * @throws IllegalArgumentException if no coefficients are provided.
+     */
+    public Ciphertext evaluatePolynomial(Ciphertext ciphertext, BigInteger[] coefficients, RelinearizationKeys relinearizationKeys) {
+        if (coefficients == null || coefficients.length == 0) {
+            throw new IllegalArgumentException(INCORRECT_POLYNOMIAL_COEFFICIENTS_EXCEPTION);
+        }
+
+        int degree = coefficients.length - 1;
+        while (degree > 0 && coefficients[degree].mod(this.plaintextModulus).signum() == 0) {
+            degree--;
+        }
+
+        if (degree == 0) {
+            return addConstant(multiplyByScalar(ciphertext, BigInteger.ZERO), coefficients[0]);
+        }
+
+        int babyStepCount = 2;
+        while (babyStepCount * babyStepCount < degree + 1) {
+            babyStepCount <<= 1;
+        }
+
+        int blockCount = 1;
+        int giantStepCount = 0;
+        while (blockCount * babyStepCount < degree + 1) {
+            blockCount <<= 1;
+            giantStepCount++;
+        }
+
+        // x^i for i < k is computed from two powers of about half the exponent, keeping the depth logarithmic
+        Ciphertext[] babySteps = new Ciphertext[Math.min(babyStepCount - 1, degree) + 1];
+        babySteps[1] = relinearize(ciphertext, relinearizationKeys);
+
+        for (int i = 2; i < babySteps.length; i++) {
+            babySteps[i] = i % 2 == 0
+                    ? square(babySteps[i / 2], relinearizationKeys)
+                    : multiply(babySteps[i / 2 + 1], babySteps[i / 2], relinearizationKeys);
+        }
+
+        Ciphertext[] giantSteps = new Ciphertext[giantStepCount];
+
+        for (int i = 0; i < giantStepCount; i++) {
+            giantSteps[i] = i == 0
+                    ? square(babySteps[babyStepCount / 2], relinearizationKeys)
+                    : square(giantSteps[i - 1], relinearizationKeys);
+        }
+
+        BigInteger[] paddedCoefficients = new BigInteger[blockCount * babyStepCount];
+        for (int i = 0; i < paddedCoefficients.length; i++) {
+            paddedCoefficients[i] = i <= degree ? coefficients[i] : BigInteger.ZERO;
+        }
+
+        Ciphertext result = evaluateBlocks(paddedCoefficients, 0, blockCount, babyStepCount,
+                babySteps, giantSteps, relinearizationKeys);
+
+        return relinearize(result, relinearizationKeys);
+    }
+
+    /**
+     * Performs homomorphic addition of a ciphertext and a plaintext by adding the plaintext scaled by delta to the first part.
+     * No encryption of the plaintext is needed and no additional noise is introduced.
+     */
+    public Ciphertext addPlain(Ciphertext ciphertext, Plaintext plaintext) {
+        BigInteger modulus = ciphertext.getModulus();
+        Polynomial scaledMessage = parameters.scaleMessage(plaintext.getPolynomial(), modulus);
+
+        return replaceEncryptionPolynomial(ciphertext,
+                ciphertext.getEncryptionPolynomial().add(scaledMessage, modulus));
+    }
+
+    /**
+     * Performs homomorphic subtraction of a plaintext from a ciphertext by subtracting the plaintext scaled by delta from the first part.
+     */
+    public Ciphertext subtractPlain(Ciphertext ciphertext, Plaintext plaintext) {
+        BigInteger modulus = ciphertext.getModulus();
+        Polynomial scaledMessage = parameters.scaleMessage(plaintext.getPolynomial(), modulus);
+
+        return replaceEncryptionPolynomial(ciphertext,
+                ciphertext.getEncryptionPolynomial().subtract(scaledMessage, modulus));
+    }
+
+    /**
+     * Performs homomorphic multiplication of a ciphertext and a plaintext by multiplying each part of the ciphertext with the plaintext.
+     * The size of the ciphertext is preserved, so no relinearization is needed.
+     */
+    public Ciphertext multiplyPlain(Ciphertext ciphertext, Plaintext plaintext) {
+        return multiplyPlain(ciphertext, transformPlaintext(plaintext));
+    }
+
+    /**
+     * Performs homomorphic multiplication of a ciphertext and a plaintext already transformed with transformPlaintext.
+     * Useful when the same plaintext multiplies many ciphertexts.
+     */
+    public Ciphertext multiplyPlain(Ciphertext ciphertext, TransformedPolynomial transformedPlaintext) {
+        BigInteger modulus = ciphertext.getModulus();
+        Polynomial[] product = inverseTransformComponents(plainProduct(ciphertext, transformedPlaintext));
+
+        for (int i = 0; i < product.length; i++) {
+            product[i] = product[i].getCoefficientsMod(modulus);
+        }
+
+        return product.length == 2
+                ? new Ciphertext(product[0], product[1], scalingFactor(modulus), modulus)
+                : new Ciphertext(product[0], product[1], product[2],
+                        scalingFactor(modulus), modulus, false);
+    }
+
+    /**
+     * Transforms a plaintext in evaluation form to be used as an operand in plaintext multiplications.
+     * The coefficients are taken in the range (-t/2, t/2] to keep the noise growth low.
+     */
+    public TransformedPolynomial transformPlaintext(Plaintext plaintext) {
+        return TransformedPolynomial.forwardTransform(
+                plaintext.getPolynomial().applySmallModularReduction(this.plaintextModulus),
+                this.chineseRemainderTheorem);
+    }
+
+    /**
+     * Computes the homomorphic inner product sum(first[i] * second[i]) of two vectors of ciphertexts.
+     * The tensor products of all pairs are computed concurrently if an executor is configured and accumulated in evaluation form without any intermediate reduction,
+     * then the sum is transformed back, scaled down and relinearized only once.
+     * If the vectors are longer than the accumulation capacity of the evaluation form allows,
+     * the pairs are processed in chunks, whose exact sums are combined before scaling.
+     *
+     * @throws IllegalArgumentException if the vectors are empty or of different length.
+     * @throws UnsupportedOperationException if any of the ciphertexts is of size 3.
+     */
+    public Ciphertext innerProduct(List<Ciphertext> first, List<Ciphertext> second, RelinearizationKeys relinearizationKeys) {
+        checkInnerProductOperands(first.size(), second.size());
+        List<Ciphertext> operands = new ArrayList<>(first);
+        operands.addAll(second);
+        BigInteger modulus = commonModulus(operands);
+
+        // each pair contributes two products to the middle part of the tensor
+        int chunkSize = Math.max(1, this.accumulationCapacity / 2);
+        Polynomial[] tensor = null;
+
+        for (int chunkStart = 0; chunkStart < first.size(); chunkStart += chunkSize) {
+            List<Supplier<TransformedPolynomial[]>> products = new ArrayList<>();
+            for (int i = chunkStart; i < Math.min(first.size(), chunkStart + chunkSize); i++) {
+                int index = i;
+                products.add(() -> tensorProduct(first.get(index), second.get(index)));
+            }
+
+            TransformedPolynomial[] accumulated = computeAll(products).stream()
+                    .reduce(Evaluator::addComponentWise)
+                    .orElseThrow();
+
+            Polynomial[] chunkTensor = inverseTransformComponents(accumulated);
+            tensor = tensor == null ? chunkTensor : addComponentWise(tensor, chunkTensor);
+        }
+
+        Polynomial[] scaled = new Polynomial[tensor.length];
+
+        for (int i = 0; i < tensor.length; i++) {
+            scaled[i] = tensor[i]
+                    .scaleAndRound(parameters.getScaling(modulus), modulus);
+        }
+
+        return relinearize(scaled[0], scaled[1], scaled[2], modulus, relinearizationKeys);
+    }
+
+    /**
+     * Computes the homomorphic inner product sum(ciphertexts[i] * plaintexts[i]) of a vector of ciphertexts
+     * and a vector of plaintexts. The plaintexts are not scaled, so the products need neither scaling nor relinearization.
+     * The products are computed concurrently if an executor is configured and accumulated in evaluation form, which is transformed back once.
+     *
+     * @throws IllegalArgumentException if the vectors are empty or of different length.
+     * @throws UnsupportedOperationException if any of the ciphertexts is of size 3.
+     */
+    public Ciphertext innerProduct(List<Ciphertext> ciphertexts, List<Plaintext> plaintexts) {
+        checkInnerProductOperands(ciphertexts.size(), plaintexts.size());
+        BigInteger modulus = commonModulus(ciphertexts);
+
+        int chunkSize = this.accumulationCapacity;
+        Polynomial[] result = null;
+
+        for (int chunkStart = 0; chunkStart < ciphertexts.size(); chunkStart += chunkSize) {
+            List<Supplier<TransformedPolynomial[]>> products = new ArrayList<>();
+            for (int i = chunkStart; i < Math.min(ciphertexts.size(), chunkStart + chunkSize); i++) {
+                int index = i;
+                products.add(() -> plainProduct(checkSize(ciphertexts.get(index), "inner product"),
+                        transformPlaintext(plaintexts.get(index))));
+            }
+
+            TransformedPolynomial[] accumulated = computeAll(products).stream()
+                    .reduce(Evaluator::addComponentWise)
+                    .orElseThrow();
+
+            Polynomial[] chunkResult = inverseTransformComponents(accumulated);
+            result = result == null ? chunkResult : addComponentWise(result, chunkResult);
+        }
+
+        return new Ciphertext(result[0].getCoefficientsMod(modulus),
+                result[1].getCoefficientsMod(modulus),
+                scalingFactor(modulus),
+                modulus);
+    }
+
+    /**
+     * Reduces a ciphertext of size 3 to a ciphertext of size 2 encrypting the same message.
+     * Ciphertexts of size 2 are returned unchanged.
+     */
+    public Ciphertext relinearize(Ciphertext ciphertext, RelinearizationKeys relinearizationKeys) {
+        if (ciphertext.getSize() == 2) {
+            return ciphertext;
+        }
+
+        BigInteger modulus = ciphertext.getModulus();
+
+        // the third part is decomposed into non negative digits, so it is brought to the range [0, q) first
+        return relinearize(ciphertext.getEncryptionPolynomial(),
+                ciphertext.getAdditionalComponent(),
+                ciphertext.getQuadraticComponent().getCoefficientsMod(modulus),
+                modulus,
+                relinearizationKeys);
+    }
+
+    /**
+     * Switches a ciphertext to the next smaller modulus q' of the modulus chain by scaling each part by q'/q and rounding.
+     * The division by q/q' is rounded exactly with integer arithmetic, see ScaleAndRound, so the rounding error of each
+     * coefficient is centered around zero instead of the one sided error of a floor division, which is multiplied by s.
+     * The result encrypts the same message with a noise reduced by about the same ratio,
+     * and all subsequent operations, serialization and decryption work with the smaller coefficients.
+     * Since q' divides q, the relinearization keys of the full modulus are valid for the switched ciphertexts as well.
+     *
+     * @throws UnsupportedOperationException if the ciphertext is already at the smallest modulus of the chain.
+     */
+    public Ciphertext modSwitch(Ciphertext ciphertext) {
+        BigInteger modulus = ciphertext.getModulus();
+        BigInteger nextModulus = this.parameters.getNextModulus(modulus);
+        ScaleAndRound scaling = new ScaleAndRound(BigInteger.ONE, modulus.divide(nextModulus));
+
+        Polynomial[] switched = new Polynomial[ciphertext.getSize()];
+
+        for (int i = 0; i < switched.length; i++) {
+            switched[i] = ciphertext.getComponent(i)
+                    .getCoefficientsMod(modulus)
+                    .scaleAndRound(scaling, nextModulus);
+        }
+
+        return switched.length == 2
+                ? new Ciphertext(switched[0], switched[1], scalingFactor(nextModulus), nextModulus)
+                : new Ciphertext(switched[0], switched[1], switched[2], scalingFactor(nextModulus), nextModulus, false);
+    }
+
+    /**
+     * Applies the Galois automorphism X -> X^g to both parts of a ciphertext, which permutes the slots of the encrypted message,
+     * and switches the result from the secret s(X^g) back to s with the Galois keys of g.
+     *
+     * @throws UnsupportedOperationException if there are no keys for the Galois element or the ciphertext is of size 3.
+     */
+    public Ciphertext applyGaloisAutomorphism(Ciphertext ciphertext, int galoisElement, GaloisKeys galoisKeys) {
+        return applyGaloisAutomorphisms(ciphertext, new int[] {galoisElement}, galoisKeys).get(0);
+    }
+
+    /**
+     * Applies several Galois automorphisms to the same ciphertext, sharing the costly part of key switching between them.
+     * The digits of the decomposition of c1 are computed and transformed in evaluation form only once, since the automorphism
+     * of the digits is a valid decomposition of the automorphism of c1 and in evaluation form it is a permutation of the values.
+     * Only the products with the keys of each Galois element and the transformation back are performed per element.
+     * All keys must share the same decomposition, which holds for keys generated by the same KeyGenerator.
+     *
+     * @return the results in the order of the Galois elements.
+     * @throws UnsupportedOperationException if there are no keys for some Galois element or the ciphertext is of size 3.
+     */
+    public List<Ciphertext> applyGaloisAutomorphisms(Ciphertext ciphertext, int[] galoisElements, GaloisKeys galoisKeys) {
+        checkSize(ciphertext, "Galois automorphism");
+        BigInteger modulus = ciphertext.getModulus();
+
+        RelinearizationKeys[] switchingKeys = new RelinearizationKeys[galoisElements.length];
+        for (int i = 0; i < galoisElements.length; i++) {
+            switchingKeys[i] = galoisElements[i] == 1 ? null : galoisKeys.getKeys(galoisElements[i]);
+        }
 
-        Polynomial c11 = first.getAdditionalComponent();
-        Polynomial c12 = second.getAdditionalComponent();
+        TransformedPolynomial[] digits = null;
+        List<Ciphertext> result = new ArrayList<>(galoisElements.length);
 
-        Polynomial c0 = c01.multiplyFFT(c02)
-                .divideByNonIntegerScalar(scalingFactor, null)
-                .getCoefficientsMod(cipherTextModulus);
+        for (int i = 0; i < galoisElements.length; i++) {
+            if (switchingKeys[i] == null) {
+                result.add(ciphertext);
+                continue;
+            }
 
-        Polynomial c1 = c01.multiplyFFT(c12)
-                .add(c02.multiplyFFT(c11), null)
-                .divideByNonIntegerScalar(scalingFactor, null)
-                .getCoefficientsMod(cipherTextModulus);
+            if (digits == null) {
+                digits = transformDigits(switchingKeys[i].decompose(ciphertext.getAdditionalComponent().getCoefficientsMod(modulus)));
+            }
 
-        Polynomial c2 = c11.multiplyFFT(c12)
-                .divideByNonIntegerScalar(scalingFactor, null)
-                .getCoefficientsMod(cipherTextModulus);
+            int galoisElement = galoisElements[i];
+            TransformedPolynomial[] permutedDigits = new TransformedPolynomial[digits.length];
+            for (int j = 0; j < digits.length; j++) {
+                permutedDigits[j] = digits[j].applyGaloisAutomorphism(galoisElement);
+            }
 
-        return relinearize(c0, c1, c2, relinearizationKeys);
+            Polynomial[] keySwitched = keySwitch(permutedDigits, switchingKeys[i]);
+            Polynomial c0 = ciphertext.getEncryptionPolynomial().applyGaloisAutomorphism(galoisElement, modulus);
+
+            result.add(new Ciphertext(c0.add(keySwitched[0], modulus),
+                    keySwitched[1].getCoefficientsMod(modulus),
+                    scalingFactor(modulus),
+                    modulus));
+        }
+
+        return result;
+    }
+
+    /**
+     * Rotates the rows of the slot matrix by each of the given steps, sharing the decomposition of the ciphertext
+     * between the rotations as in applyGaloisAutomorphisms. Keys must be generated for each of the steps,
+     * since compositions of rotations cannot share the decomposition.
+     *
+     * @return the rotated ciphertexts in the order of the steps.
+     * @throws UnsupportedOperationException if the keys for some of the steps are missing.
+     */
+    public List<Ciphertext> rotateRowsHoisted(Ciphertext ciphertext, int[] steps, GaloisKeys galoisKeys) {
+        int[] galoisElements = new int[steps.length];
+
+        for (int i = 0; i < steps.length; i++) {
+            galoisElements[i] = GaloisKeys.getRowRotationElement(steps[i], this.parameters.getPolynomialDegree());
+        }
+
+        return applyGaloisAutomorphisms(ciphertext, galoisElements, galoisKeys);
+    }
+
+    /**
+     * Rotates both rows of the slot matrix cyclically to the left by the given steps, to the right for negative steps.
+     * If there are no Galois keys for the exact number of steps, the rotation is composed of rotations by the powers of two
+     * in the binary representation of the steps.
+     *
+     * @throws UnsupportedOperationException if the keys for the rotation or its composition are missing.
+     */
+    public Ciphertext rotateRows(Ciphertext ciphertext, int steps, GaloisKeys galoisKeys) {
+        int polynomialDegree = this.parameters.getPolynomialDegree();
+        int normalizedSteps = Math.floorMod(steps, polynomialDegree / 2);
+
+        if (normalizedSteps == 0) {
+            return ciphertext;
+        }
+
+        int galoisElement = GaloisKeys.getRowRotationElement(normalizedSteps, polynomialDegree);
+
+        if (galoisKeys.hasKeys(galoisElement)) {
+            return applyGaloisAutomorphism(ciphertext, galoisElement, galoisKeys);
+        }
+
+        Ciphertext result = ciphertext;
+
+        for (int bit = 0; (normalizedSteps >> bit) > 0; bit++) {
+            if (((normalizedSteps >> bit) & 1) == 1) {
+                result = applyGaloisAutomorphism(result,
+                        GaloisKeys.getRowRotationElement(1 << bit, polynomialDegree), galoisKeys);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Swaps the two rows of the slot matrix.
+     */
+    public Ciphertext rotateColumns(Ciphertext ciphertext, GaloisKeys galoisKeys) {
+        return applyGaloisAutomorphism(ciphertext,
+                GaloisKeys.getColumnRotationElement(this.parameters.getPolynomialDegree()), galoisKeys);
+    }
+
+    /**
+     * Sums all slots of the encrypted message, the result holding the sum in each of its slots.
+     * Each row is summed with log2(d/2) rotations by the powers of two, adding the rotated ciphertext to itself,
+     * then the rows are summed with a single column rotation, e.g. the keys of generateGaloisKeys() are sufficient.
+     */
+    public Ciphertext sumSlots(Ciphertext ciphertext, GaloisKeys galoisKeys) {
+        Ciphertext result = ciphertext;
+
+        for (int step = 1; step < this.parameters.getPolynomialDegree() / 2; step <<= 1) {
+            result = add(result, rotateRows(result, step, galoisKeys));
+        }
+
+        return add(result, rotateColumns(result, galoisKeys));
     }
 
     /**
      * Reduces the size of the ciphertext after multiplication
      * by substituting the tree parts c0, c1, c2 with such polynomials c0', c1' that have the same result when evaluated.
      */
-    private Ciphertext relinearize(Polynomial c0, Polynomial c1, Polynomial c2, RelinearizationKeys relinearizationKeys) {
-        BigInteger base = relinearizationKeys.getBase();
-        List<List<Polynomial>> keys = relinearizationKeys.getKeys();
-        int levels = keys.size();
+    private Ciphertext relinearize(Polynomial c0, Polynomial c1, Polynomial c2, BigInteger modulus,
+                                   RelinearizationKeys relinearizationKeys) {
+        Polynomial[] keySwitched = keySwitch(c2, relinearizationKeys);
 
-        Polynomial[] decomposed = c2.decomposeCoefficients(base, levels);
+        Polynomial resultFirstPart = c0.add(keySwitched[0], modulus);
+        Polynomial resultSecondPart = c1.add(keySwitched[1], modulus);
 
-        Polynomial resultFirstPart = c0;
-        Polynomial resultSecondPart = c1;
+        return new Ciphertext(resultFirstPart, resultSecondPart, scalingFactor(modulus), modulus);
+    }
+
+    /**
+     * Computes the pair (sum(d_i * k_i0), sum(d_i * k_i1)), where d_i are the digits of the decomposition of a polynomial
+     * and (k_i0, k_i1) the key switching tuples of each level. Adding the pair to a ciphertext replaces the polynomial
+     * multiplied by the key the tuples were generated for (s^2 or s(X^g)) with an equivalent part multiplied by s.
+     * The keys are kept in evaluation form, so only the digits are transformed
+     * and the products of all levels are accumulated before transforming back.
+     *
+     * @param toSwitch the polynomial to be switched with coefficients in the range [0, q).
+     * @return the exact integer pair, not reduced modulo q.
+     */
+    private Polynomial[] keySwitch(Polynomial toSwitch, RelinearizationKeys switchingKeys) {
+        return keySwitch(transformDigits(switchingKeys.decompose(toSwitch)), switchingKeys);
+    }
+
+    /**
+     * Key switching with the digits of the decomposition already in evaluation form.
+     */
+    private Polynomial[] keySwitch(TransformedPolynomial[] digits, RelinearizationKeys switchingKeys) {
+        TransformedPolynomial[][] keys = switchingKeys.getTransformedKeys(this.chineseRemainderTheorem);
+        int levels = keys.length;
+
+        // Perform key switching by combining the decomposed parts with the keys.
+        // Each level of the keys consists of two polynomials, which are used
+        // to adjust the corresponding parts of the ciphertext. The levels are independent of each other.
+        List<Supplier<TransformedPolynomial[]>> levelProducts = new ArrayList<>(levels);
 
-        // Perform relinearization by combining the decomposed parts with relinearization keys.
-        // Each level of relinearization keys consists of two polynomials, which are used
-        // to adjust the corresponding parts of the ciphertext.
         for (int i = 0; i < levels; i++) {
-            resultFirstPart = resultFirstPart
-                    .add(keys.get(i).get(0)
-                            .multiply(decomposed[i], this.cipherTextModulus), this.cipherTextModulus);
+            int level = i;
+            levelProducts.add(() -> new TransformedPolynomial[] {
+                    keys[level][0].multiply(digits[level]),
+                    keys[level][1].multiply(digits[level])
+            });
+        }
+
+        TransformedPolynomial[] accumulated = computeAll(levelProducts).stream()
+                .reduce(Evaluator::addComponentWise)
+                .orElseThrow();
+
+        return computeAll(List.of(
+                () -> accumulated[0].inverseTransform(this.chineseRemainderTheorem),
+                () -> accumulated[1].inverseTransform(this.chineseRemainderTheorem)))
+                .toArray(Polynomial[]::new);
+    }
+
+    private TransformedPolynomial[] transformDigits(Polynomial[] digits) {
+        List<Supplier<TransformedPolynomial>> transforms = new ArrayList<>(digits.length);
+
+        for (Polynomial digit : digits) {
+            transforms.add(() -> TransformedPolynomial.forwardTransform(digit, this.chineseRemainderTheorem));
+        }
+
+        return computeAll(transforms).toArray(TransformedPolynomial[]::new);
+    }
+
+    /**
+     * Evaluates blockCount consecutive blocks of k coefficients starting from offset,
+     * where blockCount is a power of two and x^(k * blockCount / 2) is the giant step combining both halves.
+     * Returns null if all coefficients of the blocks are zero.
+     */
+    private Ciphertext evaluateBlocks(BigInteger[] coefficients, int offset, int blockCount, int babyStepCount,
+                                      Ciphertext[] babySteps, Ciphertext[] giantSteps,
+                                      RelinearizationKeys relinearizationKeys) {
+        if (blockCount == 1) {
+            return evaluateBlock(coefficients, offset, babyStepCount, babySteps);
+        }
+
+        int halfBlockCount = blockCount / 2;
+        Ciphertext low = evaluateBlocks(coefficients, offset, halfBlockCount, babyStepCount,
+                babySteps, giantSteps, relinearizationKeys);
+        Ciphertext high = evaluateBlocks(coefficients, offset + halfBlockCount * babyStepCount, halfBlockCount, babyStepCount,
+                babySteps, giantSteps, relinearizationKeys);
+
+        if (high == null) {
+            return low;
+        }
+
+        Ciphertext giantStep = giantSteps[Integer.numberOfTrailingZeros(halfBlockCount)];
+        Ciphertext product = multiplyWithoutRelinearization(relinearize(high, relinearizationKeys), giantStep);
+
+        return low == null ? product : add(low, product);
+    }
+
+    /**
+     * Evaluates a block sum(coefficients[offset + i] * x^i) for i < k using scalar multiplications of the baby steps.
+     * Returns null if all coefficients of the block are zero.
+     */
+    private Ciphertext evaluateBlock(BigInteger[] coefficients, int offset, int babyStepCount, Ciphertext[] babySteps) {
+        Ciphertext result = null;
+
+        for (int i = 1; i < babyStepCount && i < babySteps.length; i++) {
+            if (coefficients[offset + i].mod(this.plaintextModulus).signum() == 0) {
+                continue;
+            }
 
-            resultSecondPart = resultSecondPart
-                    .add(keys.get(i).get(1)
-                            .multiply(decomposed[i], this.cipherTextModulus), this.cipherTextModulus);
+            Ciphertext term = multiplyByScalar(babySteps[i], coefficients[offset + i]);
+            result = result == null ? term : add(result, term);
         }
 
-        return new Ciphertext(resultFirstPart, resultSecondPart, this.scalingFactor.toBigInteger(), this.cipherTextModulus);
+        if (coefficients[offset].mod(this.plaintextModulus).signum() == 0) {
+            return result;
+        }
+
+        return result == null
+                ? addConstant(multiplyByScalar(babySteps[1], BigInteger.ZERO), coefficients[offset])
+                : addConstant(result, coefficients[offset]);
+    }
+
+    /**
+     * Adds a constant to each slot of the encrypted message. In the batch encoding
+     * the constant vector corresponds to the constant polynomial, so delta times the constant is added to the free coefficient.
+     */
+    private Ciphertext addConstant(Ciphertext ciphertext, BigInteger constant) {
+        BigInteger modulus = ciphertext.getModulus();
+        BigInteger[] coefficients = ciphertext.getEncryptionPolynomial().getCoefficients().clone();
+        coefficients[0] = coefficients[0]
+                .add(parameters.scaleMessage(constant, modulus))
+                .mod(modulus);
+
+        return replaceEncryptionPolynomial(ciphertext, new Polynomial(coefficients.length, coefficients));
+    }
+
+    private BigInteger centerModPlaintextModulus(BigInteger value) {
+        BigInteger reduced = value.mod(this.plaintextModulus);
+        return reduced.compareTo(this.plaintextModulus.shiftRight(1)) > 0 ? reduced.subtract(this.plaintextModulus) : reduced;
+    }
+
+    /**
+     * Computes the unscaled tensor product (c01*c02, c01*c12 + c02*c11, c11*c12) of two ciphertexts in evaluation form.
+     */
+    private TransformedPolynomial[] tensorProduct(Ciphertext first, Ciphertext second) {
+        checkSize(first, "multiplication");
+        checkSize(second, "multiplication");
+
+        List<TransformedPolynomial[]> operands = computeAll(List.of(
+                () -> first.getTransformedComponents(this.chineseRemainderTheorem),
+                () -> second.getTransformedComponents(this.chineseRemainderTheorem)));
+
+        TransformedPolynomial[] firstTransformed = operands.get(0);
+        TransformedPolynomial[] secondTransformed = operands.get(1);
+
+        List<TransformedPolynomial> products = computeAll(List.of(
+                () -> firstTransformed[0].multiply(secondTransformed[0]),
+                () -> firstTransformed[0].multiply(secondTransformed[1]),
+                () -> secondTransformed[0].multiply(firstTransformed[1]),
+                () -> firstTransformed[1].multiply(secondTransformed[1])));
+
+        return new TransformedPolynomial[] {
+                products.get(0),
+                products.get(1).add(products.get(2)),
+                products.get(3)
+        };
+    }
+
+    /**
+     * Transforms back a tensor product in evaluation form, scales it down by delta and reduces it modulo q.
+     */
+    private Ciphertext scaleTensor(TransformedPolynomial[] tensor, BigInteger modulus) {
+        List<Polynomial> scaled = computeAll(List.of(
+                () -> scaleTensorComponent(tensor[0], modulus),
+                () -> scaleTensorComponent(tensor[1], modulus),
+                () -> scaleTensorComponent(tensor[2], modulus)));
+
+        return new Ciphertext(scaled.get(0), scaled.get(1), scaled.get(2),
+                scalingFactor(modulus), modulus, false);
+    }
+
+    private Polynomial scaleTensorComponent(TransformedPolynomial component, BigInteger modulus) {
+        return component
+                .inverseTransform(this.chineseRemainderTheorem)
+                .scaleAndRound(parameters.getScaling(modulus), modulus);
+    }
+
+    /**
+     * Computes the product of each part of a ciphertext with a plaintext in evaluation form.
+     */
+    private TransformedPolynomial[] plainProduct(Ciphertext ciphertext, TransformedPolynomial transformedPlaintext) {
+        TransformedPolynomial[] transformed = ciphertext.getTransformedComponents(this.chineseRemainderTheorem);
+        TransformedPolynomial[] result = new TransformedPolynomial[transformed.length];
+
+        for (int i = 0; i < transformed.length; i++) {
+            result[i] = transformed[i].multiply(transformedPlaintext);
+        }
+
+        return result;
+    }
+
+    private Ciphertext replaceEncryptionPolynomial(Ciphertext ciphertext, Polynomial encryptionPolynomial) {
+        return ciphertext.getSize() == 2
+                ? new Ciphertext(encryptionPolynomial, ciphertext.getAdditionalComponent(),
+                        ciphertext.getScalingFactor(), ciphertext.getModulus(), ciphertext.isDecryptInSmallDomain())
+                : new Ciphertext(encryptionPolynomial, ciphertext.getAdditionalComponent(), ciphertext.getQuadraticComponent(),
+                        ciphertext.getScalingFactor(), ciphertext.getModulus(), ciphertext.isDecryptInSmallDomain());
+    }
+
+    private Polynomial[] inverseTransformComponents(TransformedPolynomial[] components) {
+        Polynomial[] result = new Polynomial[components.length];
+
+        for (int i = 0; i < components.length; i++) {
+            result[i] = components[i].inverseTransform(this.chineseRemainderTheorem);
+        }
+
+        return result;
+    }
+
+    private static TransformedPolynomial[] addComponentWise(TransformedPolynomial[] first, TransformedPolynomial[] second) {
+        TransformedPolynomial[] result = new TransformedPolynomial[first.length];
+
+        for (int i = 0; i < first.length; i++) {
+            result[i] = first[i].add(second[i]);
+        }
+
+        return result;
+    }
+
+    private static Polynomial[] addComponentWise(Polynomial[] first, Polynomial[] second) {
+        Polynomial[] result = new Polynomial[first.length];
+
+        for (int i = 0; i < first.length; i++) {
+            result[i] = first[i].add(second[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the results of independent tasks in the given order,
+     * concurrently on the executor if one is configured and sequentially otherwise.
+     * Calls made from a task already running on the executor are computed sequentially on the same thread,
+     * so nested operations, e.g. the tensor products of an inner product, never block a thread of the executor
+     * waiting for tasks queued behind it.
+     */
+    <T> List<T> computeAll(List<Supplier<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+
+        if (this.executor == null || tasks.size() == 1 || insideTask.get()) {
+            for (Supplier<T> task : tasks) {
+                results.add(task.get());
+            }
+            return results;
+        }
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks) {
+            futures.add(CompletableFuture.supplyAsync(() -> runAsTask(task), this.executor));
+        }
+
+        for (CompletableFuture<T> future : futures) {
+            results.add(Futures.join(future));
+        }
+
+        return results;
+    }
+
+    private static <T> T runAsTask(Supplier<T> task) {
+        boolean previous = insideTask.get();
+        insideTask.set(true);
+
+        try {
+            return task.get();
+        } finally {
+            insideTask.set(previous);
+        }
+    }
+
+    private Ciphertext checkSize(Ciphertext ciphertext, String operation) {
+        if (ciphertext.getSize() != 2) {
+            throw new UnsupportedOperationException(String.format(INCORRECT_CIPHERTEXT_SIZE_EXCEPTION, operation));
+        }
+
+        return ciphertext;
+    }
+
+    private BigInteger scalingFactor(BigInteger modulus) {
+        return this.parameters.getDelta(modulus);
+    }
+
+    /**
+     * Returns the modulus of the given ciphertexts.
+     *
+     * @throws UnsupportedOperationException if the ciphertexts are at different moduli of the chain.
+     */
+    private BigInteger commonModulus(List<Ciphertext> ciphertexts) {
+        BigInteger modulus = ciphertexts.get(0).getModulus();
+
+        for (Ciphertext ciphertext : ciphertexts) {
+            if (!ciphertext.getModulus().equals(modulus)) {
+                throw new UnsupportedOperationException(String.format(NON_MATCHING_CIPHERTEXT_MODULI_EXCEPTION,
+                        ciphertext.getModulus(), modulus));
+            }
+        }
+
+        return modulus;
+    }
+
+    private void checkInnerProductOperands(int firstLength, int secondLength) {
+        if (firstLength == 0 || firstLength != secondLength) {
+            throw new IllegalArgumentException(String.format(INCORRECT_INNER_PRODUCT_OPERANDS_EXCEPTION,
+                    firstLength, secondLength));
+        }
     }
 }
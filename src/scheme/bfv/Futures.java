@@ -0,0 +1,28 @@
+package scheme.bfv;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Helper methods for the tasks submitted to an executor by the concurrent modes of the scheme classes.
+ */
+final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Waits for the result of a task. The original exception of a failed task is rethrown,
+     * so the concurrent mode fails in the same way as the sequential one.
+     */
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package scheme.bfv;
+
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static scheme.Constants.GALOIS_KEYS_NOT_FOUND_EXCEPTION;
+
+/**
+ * A class representing the key switching keys for Galois automorphisms X -> X^g.
+ * After applying the automorphism a ciphertext decrypts with the transformed secret s(X^g),
+ * the keys of each Galois element switch it back to the secret s in the same way relinearization keys switch s^2 to s,
+ * so each of them is held as an instance of RelinearizationKeys.
+ */
+public class GaloisKeys implements Serializable {
+
+    private int polynomialDegree;
+    private Map<Integer, RelinearizationKeys> keys;
+
+    public GaloisKeys(int polynomialDegree, Map<Integer, RelinearizationKeys> keys) {
+        this.polynomialDegree = polynomialDegree;
+        this.keys = new HashMap<>(keys);
+    }
+
+    /**
+     * Returns the Galois element 3^steps mod 2d rotating both rows of the slot matrix cyclically to the left by the given steps.
+     * Negative steps rotate to the right.
+     */
+    public static int getRowRotationElement(int steps, int polynomialDegree) {
+        int rowSize = polynomialDegree / 2;
+        int cyclotomicOrder = 2 * polynomialDegree;
+        int exponent = Math.floorMod(steps, rowSize);
+
+        long element = 1;
+        for (int i = 0; i < exponent; i++) {
+            element = element * 3 % cyclotomicOrder;
+        }
+
+        return (int) element;
+    }
+
+    /**
+     * Returns the Galois element 2d-1 swapping the two rows of the slot matrix.
+     */
+    public static int getColumnRotationElement(int polynomialDegree) {
+        return 2 * polynomialDegree - 1;
+    }
+
+    public boolean hasKeys(int galoisElement) {
+        return keys.containsKey(galoisElement);
+    }
+
+    /**
+     * @throws UnsupportedOperationException if no keys were generated for the Galois element.
+     */
+    public RelinearizationKeys getKeys(int galoisElement) {
+        RelinearizationKeys result = keys.get(galoisElement);
+
+        if (result == null) {
+            throw new UnsupportedOperationException(String.format(GALOIS_KEYS_NOT_FOUND_EXCEPTION, galoisElement));
+        }
+
+        return result;
+    }
+
+    public Set<Integer> getGaloisElements() {
+        return keys.keySet();
+    }
+
+    public int getPolynomialDegree() {
+        return polynomialDegree;
+    }
+}
@@ -6,25 +6,86 @@ import utils.structures.Polynomial;
 import utils.structures.PublicKey;
 import utils.structures.SecretKey;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static scheme.Constants.RELINEARIZATION_KEYS_STREAMED_EXCEPTION;
+import static utils.Constants.INCORRECT_DECOMPOSITION_BIT_COUNT_EXCEPTION;
 
 /**
  * A class encapsulating the logic for private and public key generation.
- * Also responsible for generating relinearization key generation.
+ * Also responsible for generating relinearization key generation
+ * and Galois keys for the rotations of the slots, which use the same decomposition as the relinearization keys.
+ * The constructors generate all keys at once. A key generator created with a Builder generates only the secret key,
+ * the public key and the relinearization keys are generated on the first request, so that services which only encrypt
+ * or only decrypt do not pay for the relinearization keys. The relinearization keys can also be written to a stream
+ * level by level without keeping them in memory, in which case they cannot be requested from the key generator afterwards.
  */
 public class KeyGenerator {
 
     private SecretKey secretKey;
-    private PublicKey publicKey;
-    private RelinearizationKeys relinearizationKeys;
+    private volatile PublicKey publicKey;
+    private volatile RelinearizationKeys relinearizationKeys;
+    // set when the relinearization keys were generated directly into a stream, so they are not kept by the generator
+    private boolean relinearizationKeysStreamed;
+    private Parameters parameters;
+    private BigInteger[] gadgetPowers;
+    private BigInteger base;
+    private int decompositionBitCount;
+    private boolean balancedDecomposition;
+    // generates the key switching levels, if null they are generated with a parallel stream
+    private Executor executor;
 
     public KeyGenerator(Parameters parameters) {
+        this(builder(parameters));
+        getPublicKey();
+        getRelinearizationKeys();
+    }
+
+    /**
+     * Initializes the keys with relinearization keys for decomposition with a power of two base 2^decompositionBitCount.
+     * Smaller bit counts give more levels and larger keys, but less noise is introduced by relinearization.
+     *
+     * @param decompositionBitCount the number of bits w of each digit of the decomposition
+     * @param balancedDecomposition whether the digits should be taken in the range [-2^(w-1), 2^(w-1))
+     * @throws IllegalArgumentException if the bit count is not in the range [1, min(62, log(q))]
+     */
+    public KeyGenerator(Parameters parameters, int decompositionBitCount, boolean balancedDecomposition) {
+        this(builder(parameters).powerOfTwoDecomposition(decompositionBitCount, balancedDecomposition));
+        getPublicKey();
+        getRelinearizationKeys();
+    }
+
+    private KeyGenerator(Builder builder) {
+        this.parameters = builder.parameters;
+        this.executor = builder.executor;
         generateSecretKey(parameters);
-        generatePublicKey(parameters);
-        generateRelinerizationKeysWithBaseDecompositionTechnique(parameters);
+
+        if (builder.powerOfTwoBase) {
+            initializePowerOfTwoDecomposition(parameters, builder.decompositionBitCount, builder.balancedDecomposition);
+        } else {
+            initializeBaseDecomposition(parameters);
+        }
+    }
+
+    /**
+     * Returns a builder of a key generator, which generates the public and relinearization keys on request.
+     */
+    public static Builder builder(Parameters parameters) {
+        return new Builder(parameters);
     }
 
 
@@ -46,7 +107,7 @@ public class KeyGenerator {
      * Generates an instance of the public key class.
      * The public key consists of a polynomial tuple, the first part is the masked secret and the second is a random polynomial.
      */
-    private void generatePublicKey(Parameters parameters) {
+    private PublicKey generatePublicKey(Parameters parameters) {
         //polynomial a from the original equation
         BigInteger[] randomCoefficients = SamplingOperations
                 .normalSampling(BigInteger.ZERO, parameters.getCiphertextModulus(), parameters.getPolynomialDegree());
@@ -54,8 +115,7 @@ public class KeyGenerator {
 
         Polynomial randomPolynomial = new Polynomial(parameters.getPolynomialDegree(), randomCoefficients);
 
-        BigInteger[] randomError = SamplingOperations
-                .triangleSample(parameters.getPolynomialDegree());
+        BigInteger[] randomError = parameters.sampleError();
 
         Polynomial errorPolynomial = new Polynomial(parameters.getPolynomialDegree(), randomError);
 
@@ -64,66 +124,354 @@ public class KeyGenerator {
                         .multiply(this.secretKey.getSecret(), parameters.getCiphertextModulus()), parameters.getCiphertextModulus())
                 .multiplyByScalar(new BigInteger("-1"), parameters.getCiphertextModulus());
 
-        this.publicKey = new PublicKey(keyFirstPart, randomPolynomial);
+        return new PublicKey(keyFirstPart, randomPolynomial);
     }
 
     /**
-     * Generates an instance of the relinearization keys list, using the base decomposition technique.
+     * Initializes the gadget powers of the relinearization keys, using the base decomposition technique.
+     * The number of levels is the smallest L, for which base^L is not less than q, and the gadget power base^i
+     * of each level is computed exactly modulo q, so moduli of arbitrary size (including products of RNS primes) are supported.
      */
-    private void generateRelinerizationKeysWithBaseDecompositionTechnique(Parameters parameters) {
+    private void initializeBaseDecomposition(Parameters parameters) {
         BigInteger ciphertextMod = parameters.getCiphertextModulus();
 
         BigInteger base = RoundingOperations
                 .roundSquareRootToCeil(ciphertextMod, parameters.getCiphertextModulus().sqrt());
 
-        int levels = RoundingOperations.getRoundedLogarithmOfArbitraryBaseToFloor(ciphertextMod, base).intValue();
+        List<BigInteger> powers = new ArrayList<>();
+        BigInteger power = BigInteger.ONE;
 
-        BigInteger[] keys = new BigInteger[levels];
-        int power = 1;
+        do {
+            powers.add(power.mod(ciphertextMod));
+            power = power.multiply(base);
+        } while (power.compareTo(ciphertextMod) < 0);
 
-        Polynomial squaredSecretKey = this.secretKey.getSecret().multiply(this.secretKey.getSecret(), ciphertextMod);
-        List<List<Polynomial>> keyTuples = new ArrayList<>();
+        this.base = base;
+        this.gadgetPowers = powers.toArray(BigInteger[]::new);
+    }
+
+    /**
+     * Initializes the gadget powers of the relinearization keys for decomposition with base 2^w.
+     * The gadget power of each level is obtained with a shift, the number of levels is the number of w-bit digits of q,
+     * counting one additional bit for balanced decomposition to hold the final carry.
+     */
+    private void initializePowerOfTwoDecomposition(Parameters parameters, int decompositionBitCount,
+                                                   boolean balancedDecomposition) {
+        BigInteger ciphertextMod = parameters.getCiphertextModulus();
+        int modulusBitLength = ciphertextMod.bitLength();
+
+        if (decompositionBitCount < 1 || decompositionBitCount > Math.min(62, modulusBitLength)) {
+            throw new IllegalArgumentException(String.format(INCORRECT_DECOMPOSITION_BIT_COUNT_EXCEPTION,
+                    decompositionBitCount, Math.min(62, modulusBitLength)));
+        }
+
+        int decomposedBitLength = balancedDecomposition ? modulusBitLength + 1 : modulusBitLength;
+        int levels = (decomposedBitLength + decompositionBitCount - 1) / decompositionBitCount;
+
+        BigInteger[] powers = new BigInteger[levels];
 
         for (int i = 0; i < levels; i++) {
-            BigInteger[] randomCoefficients = SamplingOperations
-                    .normalSampling(BigInteger.ZERO, ciphertextMod, parameters.getPolynomialDegree());
+            powers[i] = BigInteger.ONE.shiftLeft(i * decompositionBitCount).mod(ciphertextMod);
+        }
 
-            Polynomial k1 = new Polynomial(parameters.getPolynomialDegree(), randomCoefficients);
+        this.base = BigInteger.ONE.shiftLeft(decompositionBitCount);
+        this.decompositionBitCount = decompositionBitCount;
+        this.balancedDecomposition = balancedDecomposition;
+        this.gadgetPowers = powers;
+    }
 
-            BigInteger[] randomErrorCoefficients = SamplingOperations.triangleSample(parameters.getPolynomialDegree());
+    private RelinearizationKeys createRelinearizationKeys(List<List<Polynomial>> tuples) {
+        return decompositionBitCount > 0
+                ? new RelinearizationKeys(decompositionBitCount, balancedDecomposition, tuples)
+                : new RelinearizationKeys(base, tuples);
+    }
 
-            Polynomial error = new Polynomial(parameters.getPolynomialDegree(), randomErrorCoefficients);
+    /**
+     * Generates Galois keys for the row rotations by each of the given steps and for the column rotation.
+     * Rotations by steps without own keys can still be performed as a composition of the rotations with keys.
+     */
+    public GaloisKeys generateGaloisKeys(int[] rotationSteps) {
+        int polynomialDegree = parameters.getPolynomialDegree();
+        List<Integer> galoisElements = new ArrayList<>();
+
+        for (int steps : rotationSteps) {
+            galoisElements.add(GaloisKeys.getRowRotationElement(steps, polynomialDegree));
+        }
+        galoisElements.add(GaloisKeys.getColumnRotationElement(polynomialDegree));
 
-            Polynomial k0 = this.secretKey.getSecret()
-                    .multiply(k1, ciphertextMod)
-                    .add(error, ciphertextMod)
-                    .multiplyByScalar(new BigInteger("-1"), null)
-                    .add(squaredSecretKey
-                            .multiplyByScalar(BigInteger.valueOf(power), null), ciphertextMod)
-                    .getCoefficientsMod(ciphertextMod);
+        Map<Integer, RelinearizationKeys> keys = new HashMap<>();
 
-            List<Polynomial> keyTuple = new ArrayList<Polynomial>();
-            keyTuple.add(k0);
-            keyTuple.add(k1);
-            keyTuples.add(keyTuple);
+        for (int galoisElement : galoisElements) {
+            if (galoisElement == 1 || keys.containsKey(galoisElement)) {
+                continue;
+            }
 
-            power *=base.intValue();
-            power%= ciphertextMod.intValue();
+            Polynomial transformedSecretKey = this.secretKey.getSecret().applyGaloisAutomorphism(galoisElement, null);
+            List<List<Polynomial>> tuples = generateKeySwitchingTuples(parameters, transformedSecretKey, gadgetPowers);
 
+            keys.put(galoisElement, createRelinearizationKeys(tuples));
         }
 
-        this.relinearizationKeys = new RelinearizationKeys(base, keyTuples);
+        return new GaloisKeys(polynomialDegree, keys);
+    }
+
+    /**
+     * Generates Galois keys for the row rotations by all powers of two smaller than d/2 and for the column rotation,
+     * which is enough for a rotation by any number of steps and for summing all slots.
+     */
+    public GaloisKeys generateGaloisKeys() {
+        List<Integer> steps = new ArrayList<>();
+
+        for (int step = 1; step < parameters.getPolynomialDegree() / 2; step <<= 1) {
+            steps.add(step);
+        }
+
+        return generateGaloisKeys(steps.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private Polynomial squaredSecretKey(Parameters parameters) {
+        return this.secretKey.getSecret().multiply(this.secretKey.getSecret(), parameters.getCiphertextModulus());
+    }
+
+    /**
+     * Generates the key switching tuples of all levels in parallel, since each level depends only on its gadget power.
+     * The switched key is s^2 for relinearization keys and s(X^g) for Galois keys.
+     */
+    private List<List<Polynomial>> generateKeySwitchingTuples(Parameters parameters, Polynomial switchedKey, BigInteger[] powers) {
+        if (this.executor == null) {
+            return IntStream.range(0, powers.length)
+                    .parallel()
+                    .mapToObj(i -> generateKeySwitchingTuple(parameters, switchedKey, powers[i]))
+                    .collect(Collectors.toList());
+        }
+
+        List<CompletableFuture<List<Polynomial>>> levels = submitKeySwitchingTuples(parameters, switchedKey, powers, this.executor);
+        List<List<Polynomial>> tuples = new ArrayList<>(levels.size());
+
+        for (CompletableFuture<List<Polynomial>> level : levels) {
+            tuples.add(Futures.join(level));
+        }
+
+        return tuples;
+    }
+
+    private List<CompletableFuture<List<Polynomial>>> submitKeySwitchingTuples(Parameters parameters, Polynomial switchedKey,
+                                                                             BigInteger[] powers, Executor executor) {
+        List<CompletableFuture<List<Polynomial>>> levels = new ArrayList<>(powers.length);
+
+        for (BigInteger power : powers) {
+            levels.add(submitKeySwitchingTuple(parameters, switchedKey, power, executor));
+        }
+
+        return levels;
+    }
+
+    private CompletableFuture<List<Polynomial>> submitKeySwitchingTuple(Parameters parameters, Polynomial switchedKey,
+                                                                      BigInteger power, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> generateKeySwitchingTuple(parameters, switchedKey, power), executor);
+    }
+
+    /**
+     * Generates a single key switching tuple (k0, k1), where k1 is a random polynomial
+     * and k0 = -(s*k1 + e) + power*switchedKey mod q.
+     */
+    private List<Polynomial> generateKeySwitchingTuple(Parameters parameters, Polynomial switchedKey, BigInteger power) {
+        BigInteger ciphertextMod = parameters.getCiphertextModulus();
+
+        BigInteger[] randomCoefficients = SamplingOperations
+                .normalSampling(BigInteger.ZERO, ciphertextMod, parameters.getPolynomialDegree());
+
+        Polynomial k1 = new Polynomial(parameters.getPolynomialDegree(), randomCoefficients);
+
+        BigInteger[] randomErrorCoefficients = parameters.sampleError();
+
+        Polynomial error = new Polynomial(parameters.getPolynomialDegree(), randomErrorCoefficients);
+
+        Polynomial k0 = this.secretKey.getSecret()
+                .multiply(k1, ciphertextMod)
+                .add(error, ciphertextMod)
+                .multiplyByScalar(new BigInteger("-1"), null)
+                .add(switchedKey
+                        .multiplyByScalar(power, null), ciphertextMod)
+                .getCoefficientsMod(ciphertextMod);
+
+        List<Polynomial> keyTuple = new ArrayList<Polynomial>();
+        keyTuple.add(k0);
+        keyTuple.add(k1);
+
+        return keyTuple;
     }
 
     public SecretKey getSecretKey() {
         return secretKey;
     }
 
+    /**
+     * Returns the public key, generating it on the first call.
+     */
     public PublicKey getPublicKey() {
-        return publicKey;
+        PublicKey result = this.publicKey;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.publicKey;
+                if (result == null) {
+                    result = generatePublicKey(parameters);
+                    this.publicKey = result;
+                }
+            }
+        }
+
+        return result;
     }
 
+    /**
+     * Returns the relinearization keys, generating all levels in parallel on the first call.
+     *
+     * @throws IllegalStateException if the keys were already generated directly into a stream by writeRelinearizationKeys.
+     */
     public RelinearizationKeys getRelinearizationKeys() {
-        return relinearizationKeys;
+        RelinearizationKeys result = this.relinearizationKeys;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.relinearizationKeys;
+                if (result == null) {
+                    if (this.relinearizationKeysStreamed) {
+                        throw new IllegalStateException(RELINEARIZATION_KEYS_STREAMED_EXCEPTION);
+                    }
+                    result = createRelinearizationKeys(generateKeySwitchingTuples(parameters, squaredSecretKey(parameters), gadgetPowers));
+                    this.relinearizationKeys = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the relinearization keys to a stream in the format read by RelinearizationKeys.read.
+     * If the keys were already generated, they are written as they are. Otherwise the levels are generated in parallel,
+     * but at most as many levels as the executor has threads are submitted ahead of the level being written,
+     * so when writing is slower than generation only a few levels are held in memory at any time.
+     * The streamed keys are not kept by the key generator, so they can be generated into a stream only once
+     * and getRelinearizationKeys() fails afterwards instead of generating a different key set.
+     * If writing fails, the levels still pending are cancelled and the key generator is left as before,
+     * so the keys can be requested or written again. The stream is not closed.
+     *
+     * @throws IllegalStateException if the keys were already generated directly into a stream.
+     */
+    public void writeRelinearizationKeys(OutputStream output) throws IOException {
+        RelinearizationKeys generated;
+
+        synchronized (this) {
+            generated = this.relinearizationKeys;
+            if (generated == null) {
+                if (this.relinearizationKeysStreamed) {
+                    throw new IllegalStateException(RELINEARIZATION_KEYS_STREAMED_EXCEPTION);
+                }
+                this.relinearizationKeysStreamed = true;
+            }
+        }
+
+        boolean written = false;
+
+        try {
+            ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+
+            RelinearizationKeys.writeHeader(objectOutput, base, decompositionBitCount, balancedDecomposition, gadgetPowers.length);
+
+            if (generated != null) {
+                for (List<Polynomial> tuple : generated.getKeys()) {
+                    RelinearizationKeys.writeLevel(objectOutput, tuple);
+                }
+            } else {
+                writeGeneratedLevels(objectOutput);
+            }
+
+            objectOutput.flush();
+            written = true;
+        } finally {
+            // no complete key set exists after a failed write, so the keys may still be generated
+            if (!written && generated == null) {
+                synchronized (this) {
+                    this.relinearizationKeysStreamed = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates the levels of the relinearization keys in order and writes each one as soon as it is ready,
+     * keeping at most one level per thread of the executor in progress or waiting to be written.
+     */
+    private void writeGeneratedLevels(ObjectOutputStream objectOutput) throws IOException {
+        Executor levelExecutor = this.executor != null ? this.executor : ForkJoinPool.commonPool();
+        int window = levelExecutor instanceof ForkJoinPool
+                ? ((ForkJoinPool) levelExecutor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        Polynomial switchedKey = squaredSecretKey(parameters);
+
+        Queue<CompletableFuture<List<Polynomial>>> pending = new ArrayDeque<>(window);
+        int submitted = 0;
+
+        try {
+            while (submitted < gadgetPowers.length || !pending.isEmpty()) {
+                while (submitted < gadgetPowers.length && pending.size() < Math.max(window, 1)) {
+                    pending.add(submitKeySwitchingTuple(parameters, switchedKey, gadgetPowers[submitted++], levelExecutor));
+                }
+
+                RelinearizationKeys.writeLevel(objectOutput, Futures.join(pending.remove()));
+            }
+        } catch (IOException | RuntimeException e) {
+            // the levels not started yet are skipped, the results of those in progress are discarded
+            for (CompletableFuture<List<Polynomial>> level : pending) {
+                level.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A builder of a key generator, which generates only the secret key on creation
+     * and each of the other key sets on the first request.
+     */
+    public static class Builder {
+
+        private final Parameters parameters;
+        private boolean powerOfTwoBase;
+        private int decompositionBitCount;
+        private boolean balancedDecomposition;
+        private Executor executor;
+
+        private Builder(Parameters parameters) {
+            this.parameters = parameters;
+        }
+
+        /**
+         * Uses decomposition with a power of two base 2^decompositionBitCount for the relinearization and Galois keys
+         * instead of the base ceil(sqrt(q)).
+         */
+        public Builder powerOfTwoDecomposition(int decompositionBitCount, boolean balancedDecomposition) {
+            this.powerOfTwoBase = true;
+            this.decompositionBitCount = decompositionBitCount;
+            this.balancedDecomposition = balancedDecomposition;
+            return this;
+        }
+
+        /**
+         * Generates the levels of the key switching keys on the given executor instead of the common pool.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the decomposition bit count is not in the range [1, min(62, log(q))]
+         */
+        public KeyGenerator build() {
+            return new KeyGenerator(this);
+        }
     }
 }
@@ -0,0 +1,145 @@
+package scheme.bfv;
+
+
+import utils.structures.Ciphertext;
+import utils.structures.Plaintext;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static scheme.Constants.INCORRECT_MATRIX_DIMENSIONS_EXCEPTION;
+
+/**
+ * A class encapsulating linear algebra operations on batched ciphertexts, built on top of the BatchEncoder and the Evaluator.
+ * Each row of the slot matrix is treated as a vector of length n = d/2, so a ciphertext can hold two vectors,
+ * to which the same plaintext matrix is applied.
+ * The matrix-vector product is computed with the diagonal method of Halevi and Shoup:
+ * M*x = sum(diag_i (.) rot(x, i)), where diag_i[j] = M[j][(j+i) mod n] and (.) is the slot wise product,
+ * combined with baby-step giant-step rotations: the sum is split into n/b blocks of b diagonals,
+ * the b baby step rotations of x are shared by all blocks and each block needs a single giant step rotation by a multiple of b.
+ * This takes about 2*sqrt(n) rotations instead of n.
+ */
+public class LinearAlgebra {
+
+    private int rowSize;
+    private int babyStepCount;
+    private int giantStepCount;
+    private BigInteger plaintextModulus;
+    private Evaluator evaluator;
+    private BatchEncoder encoder;
+
+    public LinearAlgebra(Parameters parameters, Evaluator evaluator, BatchEncoder encoder) {
+        this.rowSize = parameters.getPolynomialDegree() / 2;
+        this.plaintextModulus = parameters.getPlaintextModulus();
+        this.evaluator = evaluator;
+        this.encoder = encoder;
+
+        int logarithmOfRowSize = Integer.numberOfTrailingZeros(rowSize);
+        this.babyStepCount = 1 << ((logarithmOfRowSize + 1) / 2);
+        this.giantStepCount = rowSize / babyStepCount;
+    }
+
+    /**
+     * Returns the rotation steps, for which Galois keys are needed by multiplyMatrix:
+     * the baby steps 1, ..., b-1 and the giant steps b, 2b, ..., n-b.
+     */
+    public int[] getRequiredRotationSteps() {
+        List<Integer> steps = new ArrayList<>();
+
+        for (int i = 1; i < babyStepCount; i++) {
+            steps.add(i);
+        }
+        for (int i = 1; i < giantStepCount; i++) {
+            steps.add(i * babyStepCount);
+        }
+
+        return steps.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Multiplies the vector in each row of the slot matrix of a ciphertext by a plaintext matrix.
+     * Matrices with less than n rows or columns are padded with zeros, the result of row i is in column i.
+     * The baby step rotations are computed with hoisting, the blocks of diagonals are computed concurrently
+     * on the executor of the evaluator if it has one and sequentially otherwise,
+     * each block being accumulated in evaluation form as an inner product of the rotations and the encoded diagonals.
+     * Blocks of zero diagonals are skipped.
+     *
+     * @param matrix a matrix with at most d/2 rows and columns with values modulo t.
+     * @param galoisKeys keys for the steps of getRequiredRotationSteps().
+     * @throws IllegalArgumentException if the matrix is empty or has more than d/2 rows or columns.
+     * @throws UnsupportedOperationException if some of the needed Galois keys are missing.
+     */
+    public Ciphertext multiplyMatrix(BigInteger[][] matrix, Ciphertext vector, GaloisKeys galoisKeys) {
+        checkDimensions(matrix);
+
+        int[] babySteps = IntStream.range(0, babyStepCount).toArray();
+        List<Ciphertext> babyStepRotations = evaluator.rotateRowsHoisted(vector, babySteps, galoisKeys);
+
+        List<Supplier<Ciphertext>> blocks = new ArrayList<>(giantStepCount);
+        for (int k = 0; k < giantStepCount; k++) {
+            int block = k;
+            blocks.add(() -> multiplyBlock(matrix, block, babyStepRotations, galoisKeys));
+        }
+
+        return evaluator.computeAll(blocks).stream()
+                .filter(Objects::nonNull)
+                .reduce(evaluator::add)
+                .orElseGet(() -> evaluator.multiplyByScalar(vector, BigInteger.ZERO));
+    }
+
+    /**
+     * Computes rot(sum(rot(diag_(kb+j), -kb) (.) rot(x, j)), kb) for j = 0, ..., b-1, or null if all diagonals are zero.
+     */
+    private Ciphertext multiplyBlock(BigInteger[][] matrix, int block, List<Ciphertext> babyStepRotations, GaloisKeys galoisKeys) {
+        int giantStep = block * babyStepCount;
+        List<Ciphertext> rotations = new ArrayList<>();
+        List<Plaintext> diagonals = new ArrayList<>();
+
+        for (int j = 0; j < babyStepCount; j++) {
+            BigInteger[] diagonal = new BigInteger[2 * rowSize];
+            boolean isZero = true;
+
+            for (int column = 0; column < rowSize; column++) {
+                int row = Math.floorMod(column - giantStep, rowSize);
+                BigInteger value = entry(matrix, row, (row + giantStep + j) % rowSize);
+
+                diagonal[column] = value;
+                diagonal[rowSize + column] = value;
+                isZero &= value.signum() == 0;
+            }
+
+            if (!isZero) {
+                rotations.add(babyStepRotations.get(j));
+                diagonals.add(encoder.encode(diagonal));
+            }
+        }
+
+        if (rotations.isEmpty()) {
+            return null;
+        }
+
+        return evaluator.rotateRows(evaluator.innerProduct(rotations, diagonals), giantStep, galoisKeys);
+    }
+
+    private BigInteger entry(BigInteger[][] matrix, int row, int column) {
+        return row < matrix.length && column < matrix[row].length
+                ? matrix[row][column].mod(plaintextModulus)
+                : BigInteger.ZERO;
+    }
+
+    private void checkDimensions(BigInteger[][] matrix) {
+        boolean correctDimensions = matrix.length > 0 && matrix.length <= rowSize;
+
+        for (BigInteger[] row : matrix) {
+            correctDimensions &= row.length <= rowSize;
+        }
+
+        if (!correctDimensions) {
+            throw new IllegalArgumentException(String.format(INCORRECT_MATRIX_DIMENSIONS_EXCEPTION, rowSize));
+        }
+    }
+}
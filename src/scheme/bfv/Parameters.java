@@ -1,28 +1,120 @@
 package scheme.bfv;
 
 
+import utils.operations.BitOperations;
+import utils.operations.CounterModeGenerator;
+import utils.operations.SamplingOperations;
+import utils.optimizations.ChineseRemainderTheorem;
+import utils.optimizations.ScaleAndRound;
+import utils.structures.Polynomial;
+
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static scheme.Constants.INCORRECT_ERROR_STANDARD_DEVIATION_EXCEPTION;
+import static scheme.Constants.INCORRECT_MODULUS_CHAIN_EXCEPTION;
+import static scheme.Constants.MODULUS_CANNOT_BE_SWITCHED_EXCEPTION;
 
 /**
  * A class that holds the necessary parameters for initializing a BFV homomorphic scheme
  * Holds polynomial degree d, plaintext modulus - t, ciphertext modulus and the ration between ciphertext plaintext moduli - delta.
+ * Delta = floor(q/t) and the remainder q mod t are kept as exact integers for each modulus of the chain,
+ * together with the precomputed constants for the exact scaling by t/q used in multiplication and decryption.
+ * Also provides the primes used to transform polynomials from Zq[X]/(X^d+1) in evaluation form
+ * and optionally a chain of decreasing moduli, each dividing the previous one, to which ciphertexts can be switched.
+ * The errors of the keys and of the encryption are sampled from the triangle distribution over [-1, 0, 1] by default,
+ * or from a discrete Gaussian distribution with a given standard deviation, e.g. 3.2 for the standard parameter sets.
  */
 public class Parameters implements Serializable {
 
+    // bit size of the primes used for the evaluation form of the polynomials
+    private static final int TRANSFORMATION_PRIME_BIT_SIZE = 30;
+    // additional bits of the primes product, so that up to 2^ACCUMULATION_BITS products
+    // of polynomials with coefficients modulo q can be summed in evaluation form without losing exactness
+    private static final int ACCUMULATION_BITS = 16;
+
     private int polynomialDegree;
     private BigInteger plaintextModulus;
     private BigInteger ciphertextModulus;
     private BigDecimal scalingFactor;
+    private List<BigInteger> modulusChain;
+    private Map<BigInteger, BigInteger> deltas;
+    private Map<BigInteger, BigInteger> modulusRemainders;
+    // 0 for the triangle distribution
+    private double errorStandardDeviation;
+    private transient volatile ChineseRemainderTheorem chineseRemainderTheorem;
+    private transient volatile Map<BigInteger, ScaleAndRound> scalings;
 
     public Parameters(int polynomialDegree, BigInteger plaintextModulus, BigInteger ciphertextModulus) {
+        this(polynomialDegree, plaintextModulus, List.of(ciphertextModulus));
+    }
+
+    /**
+     * Initializes parameters with a modulus chain q = q0 > q1 > ... > qk. Keys are generated and messages encrypted with q0,
+     * ciphertexts can then be switched to the smaller moduli. Each modulus must divide the previous one,
+     * e.g. q0 is a product of primes and every next modulus drops one of them,
+     * so the keys of q0 remain valid for all moduli of the chain.
+     *
+     * @param modulusChain the ciphertext moduli in decreasing order, the first one being the ciphertext modulus q.
+     * @throws IllegalArgumentException if the chain is empty, some modulus is not greater than t,
+     *                                  or does not properly divide the previous one.
+     */
+    public Parameters(int polynomialDegree, BigInteger plaintextModulus, List<BigInteger> modulusChain) {
+        this(polynomialDegree, plaintextModulus, modulusChain, 0);
+    }
+
+    /**
+     * Initializes parameters, for which the errors are sampled from the discrete Gaussian distribution.
+     *
+     * @param errorStandardDeviation the standard deviation of the errors, or 0 for the triangle distribution over [-1, 0, 1].
+     * @throws IllegalArgumentException if the standard deviation is negative or not supported by the Gaussian sampler.
+     */
+    public Parameters(int polynomialDegree, BigInteger plaintextModulus, List<BigInteger> modulusChain,
+                      double errorStandardDeviation) {
+        if (!(errorStandardDeviation >= 0)) {
+            throw new IllegalArgumentException(String.format(INCORRECT_ERROR_STANDARD_DEVIATION_EXCEPTION, errorStandardDeviation));
+        }
+
+        if (modulusChain.isEmpty()) {
+            throw new IllegalArgumentException(INCORRECT_MODULUS_CHAIN_EXCEPTION);
+        }
+
+        for (int i = 1; i < modulusChain.size(); i++) {
+            BigInteger modulus = modulusChain.get(i);
+            BigInteger previousModulus = modulusChain.get(i - 1);
+
+            if (modulus.compareTo(plaintextModulus) <= 0 || modulus.compareTo(previousModulus) >= 0
+                    || previousModulus.mod(modulus).signum() != 0) {
+                throw new IllegalArgumentException(INCORRECT_MODULUS_CHAIN_EXCEPTION);
+            }
+        }
+
         this.polynomialDegree = polynomialDegree;
         this.plaintextModulus = plaintextModulus;
-        this.ciphertextModulus = ciphertextModulus;
+        this.ciphertextModulus = modulusChain.get(0);
+        this.modulusChain = List.copyOf(modulusChain);
+        this.errorStandardDeviation = errorStandardDeviation;
+        if (errorStandardDeviation > 0) {
+            // validates the standard deviation and computes the table once
+            SamplingOperations.getGaussianSampler(errorStandardDeviation);
+        }
 
         this.scalingFactor = new BigDecimal(ciphertextModulus).divide(new BigDecimal(plaintextModulus),10, RoundingMode.HALF_EVEN);
+
+        this.deltas = new HashMap<>();
+        this.modulusRemainders = new HashMap<>();
+        for (BigInteger modulus : this.modulusChain) {
+            BigInteger[] quotientAndRemainder = modulus.divideAndRemainder(plaintextModulus);
+            deltas.put(modulus, quotientAndRemainder[0]);
+            modulusRemainders.put(modulus, quotientAndRemainder[1]);
+        }
     }
 
     public int getPolynomialDegree() {
@@ -37,7 +129,163 @@ public class Parameters implements Serializable {
         return ciphertextModulus;
     }
 
+    /**
+     * Returns the ratio q/t rounded to 10 decimal places. The scheme operations use the exact integer values of getDelta(),
+     * getModulusRemainder() and getScaling() instead.
+     */
     public BigDecimal getScalingFactor() {
         return scalingFactor;
     }
+
+    public double getErrorStandardDeviation() {
+        return errorStandardDeviation;
+    }
+
+    /**
+     * Samples the coefficients of an error polynomial from the configured distribution.
+     */
+    public BigInteger[] sampleError(Random random) {
+        return errorStandardDeviation > 0
+                ? SamplingOperations.gaussianSample(polynomialDegree, errorStandardDeviation, random)
+                : SamplingOperations.triangleSample(polynomialDegree, random);
+    }
+
+    public BigInteger[] sampleError() {
+        return sampleError(CounterModeGenerator.current());
+    }
+
+    /**
+     * Returns delta = floor(q/t) for the ciphertext modulus q.
+     */
+    public BigInteger getDelta() {
+        return deltas.get(ciphertextModulus);
+    }
+
+    /**
+     * Returns delta = floor(q/t) for a modulus of the chain.
+     */
+    public BigInteger getDelta(BigInteger modulus) {
+        BigInteger delta = deltas.get(modulus);
+        return delta != null ? delta : modulus.divide(plaintextModulus);
+    }
+
+    /**
+     * Returns q mod t for the ciphertext modulus q, so that q = delta*t + (q mod t).
+     */
+    public BigInteger getModulusRemainder() {
+        return modulusRemainders.get(ciphertextModulus);
+    }
+
+    /**
+     * Returns q mod t for a modulus of the chain.
+     */
+    public BigInteger getModulusRemainder(BigInteger modulus) {
+        BigInteger remainder = modulusRemainders.get(modulus);
+        return remainder != null ? remainder : modulus.mod(plaintextModulus);
+    }
+
+    /**
+     * Returns the exact scaling by t/q for a modulus of the chain.
+     * The instances are created on first use and are not serialized.
+     */
+    public ScaleAndRound getScaling(BigInteger modulus) {
+        Map<BigInteger, ScaleAndRound> result = this.scalings;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.scalings;
+                if (result == null) {
+                    result = new ConcurrentHashMap<>();
+                    this.scalings = result;
+                }
+            }
+        }
+
+        return result.computeIfAbsent(modulus, key -> new ScaleAndRound(plaintextModulus, key));
+    }
+
+    /**
+     * Scales a message from the plaintext space to the ciphertext space with modulus q, computing round(q*m/t) mod q
+     * exactly as delta*m + round((q mod t)*m/t). Compared to delta*m alone, the term (q mod t)*m, which is as large as t^2,
+     * does not end up in the noise.
+     *
+     * @param message a polynomial with coefficients modulo t.
+     */
+    public Polynomial scaleMessage(Polynomial message, BigInteger modulus) {
+        BigInteger[] coefficients = message.getCoefficients();
+        BigInteger[] scaledCoefficients = new BigInteger[coefficients.length];
+
+        for (int i = 0; i < coefficients.length; i++) {
+            scaledCoefficients[i] = scaleMessage(coefficients[i], modulus);
+        }
+
+        return new Polynomial(message.getPolynomialDegree(), scaledCoefficients);
+    }
+
+    /**
+     * Scales a single value modulo t to round(q*m/t) mod q, see scaleMessage(Polynomial, BigInteger).
+     */
+    public BigInteger scaleMessage(BigInteger value, BigInteger modulus) {
+        BigInteger reducedValue = value.mod(plaintextModulus);
+        // round((q mod t)*m/t) with ties rounded up
+        BigInteger correction = getModulusRemainder(modulus).multiply(reducedValue).shiftLeft(1).add(plaintextModulus)
+                .divide(plaintextModulus.shiftLeft(1));
+
+        return getDelta(modulus).multiply(reducedValue).add(correction).mod(modulus);
+    }
+
+    public List<BigInteger> getModulusChain() {
+        return modulusChain;
+    }
+
+    /**
+     * Returns the modulus following the given one in the modulus chain.
+     *
+     * @throws UnsupportedOperationException if the modulus is the last one or is not part of the chain.
+     */
+    public BigInteger getNextModulus(BigInteger modulus) {
+        int index = modulusChain.indexOf(modulus);
+
+        if (index < 0 || index == modulusChain.size() - 1) {
+            throw new UnsupportedOperationException(String.format(MODULUS_CANNOT_BE_SWITCHED_EXCEPTION, modulus));
+        }
+
+        return modulusChain.get(index + 1);
+    }
+
+    /**
+     * Returns the maximal number of products of polynomials with coefficients modulo q,
+     * that can be accumulated in evaluation form before the result has to be transformed back.
+     */
+    public int getAccumulationCapacity() {
+        return 1 << ACCUMULATION_BITS;
+    }
+
+    /**
+     * Lazily initializes the primes and the Number Theoretic Transforms used to represent polynomials in evaluation form.
+     * The product of the primes is big enough to hold the exact product of two polynomials from Zq[X]/(X^d+1)
+     * and the sum of up to getAccumulationCapacity() such products.
+     * The instance is not serialized and is created again on the first use after deserialization.
+     */
+    public ChineseRemainderTheorem getChineseRemainderTheorem() {
+        ChineseRemainderTheorem result = this.chineseRemainderTheorem;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.chineseRemainderTheorem;
+                if (result == null) {
+                    int productBitSize = 2 * ciphertextModulus.bitLength()
+                            + BitOperations.logarithmBaseTwoOfBigInteger(BigInteger.valueOf(polynomialDegree))
+                            + ACCUMULATION_BITS + 2;
+                    int numberOfPrimes = (productBitSize + TRANSFORMATION_PRIME_BIT_SIZE - 1) / TRANSFORMATION_PRIME_BIT_SIZE;
+
+                    result = new ChineseRemainderTheorem(BigInteger.valueOf(polynomialDegree),
+                            TRANSFORMATION_PRIME_BIT_SIZE, numberOfPrimes);
+                    this.chineseRemainderTheorem = result;
+                }
+            }
+        }
+
+        return result;
+    }
 }
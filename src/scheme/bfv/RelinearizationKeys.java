@@ -1,31 +1,143 @@
 package scheme.bfv;
 
 
+import utils.optimizations.ChineseRemainderTheorem;
 import utils.structures.Polynomial;
+import utils.structures.TransformedPolynomial;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * A class representing a relinearization key tuple.
  * It is used to perform the relinearization step that is necessary to prevent the exponential growth of the ciphertext.
+ * The keys are also kept in evaluation form after their first use, since they take part in every relinearization.
+ * The decomposition base is either an arbitrary integer or a power of two 2^w, in which case the decomposition
+ * is performed with shifts and masks and the digits may be balanced around zero.
  */
 public class RelinearizationKeys implements Serializable {
 
     private BigInteger base;
     private List<List<Polynomial>> keys;
+    private int decompositionBitCount;
+    private boolean balancedDecomposition;
+    private transient volatile TransformedPolynomial[][] transformedKeys;
 
     public RelinearizationKeys(BigInteger base, List<List<Polynomial>> keys) {
         this.base = base;
         this.keys = keys;
+        this.decompositionBitCount = 0;
+        this.balancedDecomposition = false;
+    }
+
+    /**
+     * Initializes relinearization keys for decomposition with base 2^decompositionBitCount.
+     */
+    public RelinearizationKeys(int decompositionBitCount, boolean balancedDecomposition, List<List<Polynomial>> keys) {
+        this.base = BigInteger.ONE.shiftLeft(decompositionBitCount);
+        this.keys = keys;
+        this.decompositionBitCount = decompositionBitCount;
+        this.balancedDecomposition = balancedDecomposition;
+    }
+
+    /**
+     * Decomposes the coefficients of a polynomial with respect to the base of the keys into as many digits as there are levels.
+     */
+    public Polynomial[] decompose(Polynomial polynomial) {
+        return isPowerOfTwoBase()
+                ? polynomial.decomposeCoefficientsPowerOfTwo(decompositionBitCount, keys.size(), balancedDecomposition)
+                : polynomial.decomposeCoefficients(base, keys.size());
     }
 
     public BigInteger getBase() {
         return base;
     }
 
+    public boolean isPowerOfTwoBase() {
+        return decompositionBitCount > 0;
+    }
+
+    public int getDecompositionBitCount() {
+        return decompositionBitCount;
+    }
+
+    public boolean isBalancedDecomposition() {
+        return balancedDecomposition;
+    }
+
     public List<List<Polynomial>> getKeys() {
         return keys;
     }
+
+    /**
+     * Returns the key tuples of each level in evaluation form with respect to the given primes.
+     * The transformation is performed only once, every following call with the same primes returns a copy of the cached result.
+     */
+    public TransformedPolynomial[][] getTransformedKeys(ChineseRemainderTheorem chineseRemainderTheorem) {
+        TransformedPolynomial[][] result = this.transformedKeys;
+
+        if (result == null || (result.length > 0 && !result[0][0].isTransformedWith(chineseRemainderTheorem))) {
+            result = new TransformedPolynomial[keys.size()][];
+
+            for (int i = 0; i < keys.size(); i++) {
+                result[i] = new TransformedPolynomial[] {
+                        TransformedPolynomial.forwardTransform(keys.get(i).get(0), chineseRemainderTheorem),
+                        TransformedPolynomial.forwardTransform(keys.get(i).get(1), chineseRemainderTheorem)
+                };
+            }
+            this.transformedKeys = result;
+        }
+
+        TransformedPolynomial[][] copy = new TransformedPolynomial[result.length][];
+        for (int i = 0; i < result.length; i++) {
+            copy[i] = result[i].clone();
+        }
+
+        return copy;
+    }
+
+    /**
+     * Reads relinearization keys written level by level with KeyGenerator.writeRelinearizationKeys.
+     */
+    public static RelinearizationKeys read(InputStream input) throws IOException, ClassNotFoundException {
+        ObjectInputStream objectInput = new ObjectInputStream(input);
+
+        BigInteger base = (BigInteger) objectInput.readObject();
+        int decompositionBitCount = objectInput.readInt();
+        boolean balancedDecomposition = objectInput.readBoolean();
+        int levels = objectInput.readInt();
+
+        List<List<Polynomial>> keys = new ArrayList<>(levels);
+        for (int i = 0; i < levels; i++) {
+            List<Polynomial> tuple = new ArrayList<>();
+            tuple.add((Polynomial) objectInput.readObject());
+            tuple.add((Polynomial) objectInput.readObject());
+            keys.add(tuple);
+        }
+
+        return decompositionBitCount > 0
+                ? new RelinearizationKeys(decompositionBitCount, balancedDecomposition, keys)
+                : new RelinearizationKeys(base, keys);
+    }
+
+    static void writeHeader(ObjectOutputStream output, BigInteger base, int decompositionBitCount,
+                            boolean balancedDecomposition, int levels) throws IOException {
+        output.writeObject(base);
+        output.writeInt(decompositionBitCount);
+        output.writeBoolean(balancedDecomposition);
+        output.writeInt(levels);
+    }
+
+    static void writeLevel(ObjectOutputStream output, List<Polynomial> tuple) throws IOException {
+        output.writeObject(tuple.get(0));
+        output.writeObject(tuple.get(1));
+        // the stream would otherwise keep a reference to every written polynomial
+        output.reset();
+    }
 }
@@ -0,0 +1,58 @@
+package scheme.bfv;
+
+import utils.operations.CounterModeGenerator;
+import utils.operations.SamplingOperations;
+import utils.optimizations.ChineseRemainderTheorem;
+import utils.structures.Plaintext;
+import utils.structures.Polynomial;
+import utils.structures.SecretKey;
+import utils.structures.SeededCiphertext;
+import utils.structures.TransformedPolynomial;
+
+import java.math.BigInteger;
+
+/**
+ * A class encapsulating the logic for secret key encryption, meant for the owner of the secret key.
+ * A message m is encrypted as (-a*s + e + delta*m, a), where a is uniformly random and expanded from a short seed,
+ * so only one noise sample and one product with the key are needed instead of three samples and two products
+ * for public key encryption. The result is a SeededCiphertext, which holds only the first part and the seed
+ * and is expanded to a regular Ciphertext before the homomorphic operations.
+ */
+public class SymmetricEncryptor {
+
+    private int polynomialDegree;
+    private BigInteger modulus;
+    private BigInteger delta;
+    private Parameters parameters;
+    private ChineseRemainderTheorem chineseRemainderTheorem;
+    // the secret key in evaluation form, transformed once on construction
+    private TransformedPolynomial transformedSecret;
+
+    public SymmetricEncryptor(Parameters parameters, SecretKey secretKey) {
+        this.polynomialDegree = parameters.getPolynomialDegree();
+        this.modulus = parameters.getCiphertextModulus();
+        this.delta = parameters.getDelta();
+        this.parameters = parameters;
+        this.chineseRemainderTheorem = parameters.getChineseRemainderTheorem();
+        this.transformedSecret = TransformedPolynomial.forwardTransform(secretKey.getSecret(), this.chineseRemainderTheorem);
+    }
+
+    public SeededCiphertext encrypt(Plaintext message) {
+        byte[] seed = CounterModeGenerator.generateSeed();
+
+        Polynomial a = new Polynomial(polynomialDegree,
+                SamplingOperations.uniformSampleFromSeed(seed, this.modulus, this.polynomialDegree));
+        Polynomial e = new Polynomial(polynomialDegree, this.parameters.sampleError());
+
+        Polynomial as = TransformedPolynomial.forwardTransform(a, this.chineseRemainderTheorem)
+                .multiply(this.transformedSecret)
+                .inverseTransform(this.chineseRemainderTheorem);
+
+        // round(q*m/t) instead of delta*m, in the same way as in public key encryption
+        Polynomial scaledMessage = this.parameters.scaleMessage(message.getPolynomial(), this.modulus);
+
+        Polynomial firstPart = e.subtract(as).add(scaledMessage, this.modulus);
+
+        return new SeededCiphertext(firstPart, seed, this.delta, this.modulus);
+    }
+}
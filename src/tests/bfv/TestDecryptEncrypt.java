@@ -3,12 +3,26 @@ package tests.bfv;
 import org.junit.Before;
 import org.junit.Test;
 import scheme.bfv.*;
+import utils.operations.SamplingOperations;
 import utils.structures.Ciphertext;
 import utils.structures.Plaintext;
+import utils.structures.Polynomial;
 import utils.structures.PublicKey;
 import utils.structures.SecretKey;
+import utils.structures.SeededCiphertext;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -43,6 +57,15 @@ public class TestDecryptEncrypt {
         decryptor = new Decryptor(parameters, sk);
     }
 
+    @Test
+    public void testEncryptWithHammingWeight() {
+        BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, polynomialDegree);
+
+        Ciphertext ciphertext = encryptor.encryptWithHammingWeight(encoder.encode(message), 2);
+
+        assertArrayEquals(message, encoder.decode(decryptor.decrypt(ciphertext, null)));
+    }
+
     @Test
     public void testEncryptDecrypt() {
         BigInteger[] message1 = {BigInteger.ZERO, BigInteger.valueOf(5), BigInteger.valueOf(8), BigInteger.valueOf(2),
@@ -66,4 +89,151 @@ public class TestDecryptEncrypt {
         assertArrayEquals(message1, decodedFirst);
         assertArrayEquals(message2, decodedSecond);
     }
+
+    @Test
+    public void testExactDelta() {
+        // 65537 = 255*257 + 2
+        assertEquals(BigInteger.valueOf(255), parameters.getDelta());
+        assertEquals(BigInteger.valueOf(2), parameters.getModulusRemainder());
+
+        BigInteger[] coefficients = new BigInteger[polynomialDegree];
+        BigInteger[] expected = new BigInteger[polynomialDegree];
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            coefficients[i] = BigInteger.valueOf(37 * i + 200).mod(plaintextModulus);
+            expected[i] = new BigDecimal(ciphertextModulus.multiply(coefficients[i]))
+                    .divide(new BigDecimal(plaintextModulus), 0, RoundingMode.HALF_UP)
+                    .toBigInteger()
+                    .mod(ciphertextModulus);
+        }
+
+        Polynomial scaled = parameters.scaleMessage(new Polynomial(polynomialDegree, coefficients), ciphertextModulus);
+
+        assertArrayEquals(expected, scaled.getCoefficients());
+    }
+
+    @Test
+    public void testDecryptAndDecode() {
+        BigInteger[] message = {BigInteger.valueOf(256), BigInteger.valueOf(5), BigInteger.valueOf(8), BigInteger.ZERO,
+                BigInteger.valueOf(5), BigInteger.valueOf(16), BigInteger.valueOf(4), BigInteger.valueOf(128)};
+
+        Ciphertext ciphertext = encryptor.encrypt(encoder.encode(message));
+
+        long[] decoded = decryptor.decryptAndDecode(ciphertext);
+        BigInteger[] expected = encoder.decode(decryptor.decrypt(ciphertext, null));
+
+        assertEquals(polynomialDegree, decoded.length);
+        for (int i = 0; i < polynomialDegree; i++) {
+            assertEquals(message[i].longValue(), decoded[i]);
+            assertEquals(expected[i].longValue(), decoded[i]);
+        }
+    }
+
+    @Test
+    public void testEncryptAll() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            Encryptor concurrentEncryptor = new Encryptor(parameters, pk, executor);
+
+            List<BigInteger[]> messages = new ArrayList<>();
+            List<Plaintext> plaintexts = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, polynomialDegree);
+                messages.add(message);
+                plaintexts.add(encoder.encode(message));
+            }
+
+            List<Ciphertext> ciphertexts = concurrentEncryptor.encryptAll(plaintexts);
+            List<Ciphertext> streamed = concurrentEncryptor.encryptAll(plaintexts.stream()).collect(Collectors.toList());
+            List<Ciphertext> sequential = encryptor.encryptAll(plaintexts);
+
+            assertEquals(messages.size(), ciphertexts.size());
+            for (int i = 0; i < messages.size(); i++) {
+                assertArrayEquals(messages.get(i), encoder.decode(decryptor.decrypt(ciphertexts.get(i), null)));
+                assertArrayEquals(messages.get(i), encoder.decode(decryptor.decrypt(streamed.get(i), null)));
+                assertArrayEquals(messages.get(i), encoder.decode(decryptor.decrypt(sequential.get(i), null)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrecomputedMasks() throws InterruptedException {
+        int poolCapacity = 4;
+        encryptor.startMaskPrecomputation(poolCapacity);
+
+        try {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (encryptor.getPrecomputedMaskCount() < poolCapacity && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(poolCapacity, encryptor.getPrecomputedMaskCount());
+
+            for (int i = 0; i < 2 * poolCapacity; i++) {
+                BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, polynomialDegree);
+
+                assertArrayEquals(message, encoder.decode(decryptor.decrypt(encryptor.encrypt(encoder.encode(message)), null)));
+            }
+        } finally {
+            encryptor.stopMaskPrecomputation();
+        }
+
+        assertEquals(0, encryptor.getPrecomputedMaskCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrecomputedMasksWithIncorrectCapacity() {
+        encryptor.startMaskPrecomputation(0);
+    }
+
+    @Test
+    public void testSymmetricEncryption() throws IOException {
+        SymmetricEncryptor symmetricEncryptor = new SymmetricEncryptor(parameters, sk);
+
+        BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, polynomialDegree);
+
+        SeededCiphertext seeded = symmetricEncryptor.encrypt(encoder.encode(message));
+        Ciphertext expanded = seeded.expand();
+
+        assertArrayEquals(message, encoder.decode(decryptor.decrypt(expanded, null)));
+        // the expansion is deterministic, so the evaluator side gets the same second part
+        assertEquals(expanded.getAdditionalComponent(), seeded.expand().getAdditionalComponent());
+        assertTrue(serializedSize(seeded) < serializedSize(expanded));
+    }
+
+    private static int serializedSize(Serializable object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(object);
+        }
+        return bytes.size();
+    }
+
+    @Test
+    public void testEncryptDecryptWithGaussianErrors() {
+        Parameters gaussianParameters = new Parameters(polynomialDegree, plaintextModulus,
+                List.of(BigInteger.ONE.shiftLeft(60).add(BigInteger.ONE)), 3.2);
+        KeyGenerator gaussianGenerator = new KeyGenerator(gaussianParameters);
+
+        Encryptor gaussianEncryptor = new Encryptor(gaussianParameters, gaussianGenerator.getPublicKey());
+        SymmetricEncryptor symmetricEncryptor = new SymmetricEncryptor(gaussianParameters, gaussianGenerator.getSecretKey());
+        Decryptor gaussianDecryptor = new Decryptor(gaussianParameters, gaussianGenerator.getSecretKey());
+        Evaluator gaussianEvaluator = new Evaluator(gaussianParameters);
+
+        BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, polynomialDegree);
+
+        Ciphertext ciphertext = gaussianEncryptor.encrypt(encoder.encode(message));
+        Ciphertext squared = gaussianEvaluator.square(ciphertext, gaussianGenerator.getRelinearizationKeys());
+
+        assertArrayEquals(message, encoder.decode(gaussianDecryptor.decrypt(ciphertext, null)));
+        assertArrayEquals(message, encoder.decode(gaussianDecryptor.decrypt(
+                symmetricEncryptor.encrypt(encoder.encode(message)).expand(), null)));
+
+        BigInteger[] decodedSquare = encoder.decode(gaussianDecryptor.decrypt(squared, null));
+        for (int i = 0; i < polynomialDegree; i++) {
+            assertEquals(message[i].pow(2).mod(plaintextModulus), decodedSquare[i]);
+        }
+    }
 }
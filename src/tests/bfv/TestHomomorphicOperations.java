@@ -3,12 +3,25 @@ package tests.bfv;
 import org.junit.Before;
 import org.junit.Test;
 import scheme.bfv.*;
+import utils.operations.SamplingOperations;
 import utils.structures.Ciphertext;
 import utils.structures.Plaintext;
+import utils.structures.Polynomial;
 import utils.structures.PublicKey;
 import utils.structures.SecretKey;
+import utils.structures.TransformedPolynomial;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -159,4 +172,617 @@ public class TestHomomorphicOperations {
         }
 
     }
+
+    //the same operand is multiplied twice, its evaluation form should be computed only once
+    @Test
+    public void testRepeatedOperandMultiplication() {
+        BigInteger[] message1 = {
+                BigInteger.ZERO, BigInteger.valueOf(5), BigInteger.valueOf(8), BigInteger.valueOf(2),
+                BigInteger.valueOf(5), BigInteger.valueOf(16), BigInteger.valueOf(4), BigInteger.valueOf(5)
+        };
+
+        BigInteger[] message2 = {
+                BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(4),
+                BigInteger.valueOf(5), BigInteger.valueOf(6), BigInteger.valueOf(7), BigInteger.valueOf(8)
+        };
+
+        Ciphertext ciphertextFirst = encryptor.encrypt(encoder.encode(message1));
+        Ciphertext ciphertextSecond = encryptor.encrypt(encoder.encode(message2));
+
+        Ciphertext firstResult = evaluator.multiply(ciphertextFirst, ciphertextSecond, rk);
+        TransformedPolynomial[] memoized = ciphertextFirst.getTransformedComponents(parameters.getChineseRemainderTheorem());
+        Ciphertext secondResult = evaluator.multiply(ciphertextFirst, ciphertextFirst, rk);
+
+        TransformedPolynomial[] repeated = ciphertextFirst.getTransformedComponents(parameters.getChineseRemainderTheorem());
+        assertNotSame(memoized, repeated);
+        for (int i = 0; i < memoized.length; i++) {
+            assertSame(memoized[i], repeated[i]);
+        }
+
+        // modifying the returned array does not affect the memoized components
+        memoized[0] = null;
+        assertNotNull(ciphertextFirst.getTransformedComponents(parameters.getChineseRemainderTheorem())[0]);
+
+        BigInteger[] decodedFirst = encoder.decode(decryptor.decrypt(firstResult, null));
+        BigInteger[] decodedSecond = encoder.decode(decryptor.decrypt(secondResult, null));
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            assertEquals(message1[i].multiply(message2[i]).mod(plaintextModulus), decodedFirst[i]);
+            assertEquals(message1[i].multiply(message1[i]).mod(plaintextModulus), decodedSecond[i]);
+        }
+    }
+
+    @Test
+    public void testMultiplicationWithPowerOfTwoDecomposition() {
+        BigInteger[] message1 = {
+                BigInteger.ZERO, BigInteger.valueOf(5), BigInteger.valueOf(8), BigInteger.valueOf(2),
+                BigInteger.valueOf(5), BigInteger.valueOf(16), BigInteger.valueOf(4), BigInteger.valueOf(5)
+        };
+
+        BigInteger[] message2 = {
+                BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(4),
+                BigInteger.valueOf(5), BigInteger.valueOf(6), BigInteger.valueOf(7), BigInteger.valueOf(8)
+        };
+
+        for (boolean balanced : new boolean[] {false, true}) {
+            KeyGenerator powerOfTwoGenerator = new KeyGenerator(parameters, 16, balanced);
+            Encryptor powerOfTwoEncryptor = new Encryptor(parameters, powerOfTwoGenerator.getPublicKey());
+            Decryptor powerOfTwoDecryptor = new Decryptor(parameters, powerOfTwoGenerator.getSecretKey());
+
+            Ciphertext ciphertextFirst = powerOfTwoEncryptor.encrypt(encoder.encode(message1));
+            Ciphertext ciphertextSecond = powerOfTwoEncryptor.encrypt(encoder.encode(message2));
+
+            Ciphertext result = evaluator.multiply(ciphertextFirst, ciphertextSecond,
+                    powerOfTwoGenerator.getRelinearizationKeys());
+
+            BigInteger[] decodedResult = encoder.decode(powerOfTwoDecryptor.decrypt(result, null));
+
+            for (int i = 0; i < polynomialDegree; i++) {
+                assertEquals(message1[i].multiply(message2[i]).mod(plaintextModulus), decodedResult[i]);
+            }
+        }
+    }
+
+    //the lower 32 bits of the modulus are much smaller than the decomposition base
+    @Test
+    public void testMultiplicationWithModulusBeyondIntegerRange() {
+        BigInteger largeModulus = BigInteger.TWO.pow(45).add(BigInteger.valueOf(15));
+        Parameters largeParameters = new Parameters(polynomialDegree, plaintextModulus, largeModulus);
+
+        KeyGenerator largeGenerator = new KeyGenerator(largeParameters);
+        Encryptor largeEncryptor = new Encryptor(largeParameters, largeGenerator.getPublicKey());
+        Decryptor largeDecryptor = new Decryptor(largeParameters, largeGenerator.getSecretKey());
+        Evaluator largeEvaluator = new Evaluator(largeParameters);
+
+        BigInteger[] message1 = {
+                BigInteger.ZERO, BigInteger.valueOf(5), BigInteger.valueOf(8), BigInteger.valueOf(2),
+                BigInteger.valueOf(5), BigInteger.valueOf(16), BigInteger.valueOf(4), BigInteger.valueOf(5)
+        };
+
+        BigInteger[] message2 = {
+                BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(4),
+                BigInteger.valueOf(5), BigInteger.valueOf(6), BigInteger.valueOf(7), BigInteger.valueOf(8)
+        };
+
+        Ciphertext result = largeEvaluator.multiply(
+                largeEncryptor.encrypt(encoder.encode(message1)),
+                largeEncryptor.encrypt(encoder.encode(message2)),
+                largeGenerator.getRelinearizationKeys());
+
+        BigInteger[] decodedResult = encoder.decode(largeDecryptor.decrypt(result, null));
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            assertEquals(message1[i].multiply(message2[i]).mod(plaintextModulus), decodedResult[i]);
+        }
+    }
+
+    //sum of two products relinearized once, compared with the decryption of the size 3 ciphertext
+    @Test
+    public void testDeferredRelinearization() {
+        BigInteger[] message1 = {
+                BigInteger.ZERO, BigInteger.valueOf(5), BigInteger.valueOf(8), BigInteger.valueOf(2),
+                BigInteger.valueOf(5), BigInteger.valueOf(16), BigInteger.valueOf(4), BigInteger.valueOf(5)
+        };
+
+        BigInteger[] message2 = {
+                BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(4),
+                BigInteger.valueOf(5), BigInteger.valueOf(6), BigInteger.valueOf(7), BigInteger.valueOf(8)
+        };
+
+        Ciphertext ciphertextFirst = encryptor.encrypt(encoder.encode(message1));
+        Ciphertext ciphertextSecond = encryptor.encrypt(encoder.encode(message2));
+
+        Ciphertext sum = evaluator.add(
+                evaluator.multiplyWithoutRelinearization(ciphertextFirst, ciphertextSecond),
+                evaluator.multiplyWithoutRelinearization(ciphertextSecond, ciphertextSecond));
+
+        assertEquals(3, sum.getSize());
+
+        Ciphertext relinearized = evaluator.relinearize(sum, rk);
+
+        assertEquals(2, relinearized.getSize());
+
+        BigInteger[] decodedSum = encoder.decode(decryptor.decrypt(sum, null));
+        BigInteger[] decodedRelinearized = encoder.decode(decryptor.decrypt(relinearized, null));
+        // the third part passed separately as the extra term decrypts the same way
+        BigInteger[] decodedExtraTerm = encoder.decode(decryptor.decrypt(
+                new Ciphertext(sum.getEncryptionPolynomial(), sum.getAdditionalComponent(), sum.getScalingFactor(), sum.getModulus()),
+                sum.getQuadraticComponent()));
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            BigInteger expected = message1[i].multiply(message2[i]).add(message2[i].pow(2)).mod(plaintextModulus);
+
+            assertEquals(expected, decodedSum[i]);
+            assertEquals(expected, decodedRelinearized[i]);
+            assertEquals(expected, decodedExtraTerm[i]);
+        }
+    }
+
+    @Test
+    public void testInnerProduct() {
+        int length = 3;
+        List<BigInteger[]> firstMessages = new ArrayList<>();
+        List<BigInteger[]> secondMessages = new ArrayList<>();
+        List<Ciphertext> firstCiphertexts = new ArrayList<>();
+        List<Ciphertext> secondCiphertexts = new ArrayList<>();
+        List<Plaintext> secondPlaintexts = new ArrayList<>();
+
+        for (int i = 0; i < length; i++) {
+            BigInteger[] first = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+            BigInteger[] second = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+
+            firstMessages.add(first);
+            secondMessages.add(second);
+            firstCiphertexts.add(encryptor.encrypt(encoder.encode(first)));
+            secondPlaintexts.add(encoder.encode(second));
+            secondCiphertexts.add(encryptor.encrypt(secondPlaintexts.get(i)));
+        }
+
+        BigInteger[] decodedResult = encoder.decode(decryptor.decrypt(
+                evaluator.innerProduct(firstCiphertexts, secondCiphertexts, rk), null));
+        BigInteger[] decodedPlainResult = encoder.decode(decryptor.decrypt(
+                evaluator.innerProduct(firstCiphertexts, secondPlaintexts), null));
+
+        for (int j = 0; j < polynomialDegree; j++) {
+            BigInteger expected = BigInteger.ZERO;
+            for (int i = 0; i < length; i++) {
+                expected = expected.add(firstMessages.get(i)[j].multiply(secondMessages.get(i)[j]));
+            }
+
+            assertEquals(expected.mod(plaintextModulus), decodedResult[j]);
+            assertEquals(expected.mod(plaintextModulus), decodedPlainResult[j]);
+        }
+    }
+
+    @Test
+    public void testPlaintextOperations() {
+        BigInteger[] message1 = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+        BigInteger[] message2 = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+
+        Ciphertext ciphertext = encryptor.encrypt(encoder.encode(message1));
+        Plaintext plaintext = encoder.encode(message2);
+
+        BigInteger[] sum = encoder.decode(decryptor.decrypt(evaluator.addPlain(ciphertext, plaintext), null));
+        BigInteger[] difference = encoder.decode(decryptor.decrypt(evaluator.subtractPlain(ciphertext, plaintext), null));
+        BigInteger[] product = encoder.decode(decryptor.decrypt(evaluator.multiplyPlain(ciphertext, plaintext), null));
+        BigInteger[] transformedProduct = encoder.decode(decryptor.decrypt(
+                evaluator.multiplyPlain(ciphertext, evaluator.transformPlaintext(plaintext)), null));
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            assertEquals(message1[i].add(message2[i]).mod(plaintextModulus), sum[i]);
+            assertEquals(message1[i].subtract(message2[i]).mod(plaintextModulus), difference[i]);
+            assertEquals(message1[i].multiply(message2[i]).mod(plaintextModulus), product[i]);
+            assertEquals(message1[i].multiply(message2[i]).mod(plaintextModulus), transformedProduct[i]);
+        }
+    }
+
+    @Test
+    public void testSquareAndPower() {
+        // depth two does not fit in the noise budget of the shared parameters, so a larger modulus is used
+        Parameters deepParameters = new Parameters(polynomialDegree, plaintextModulus, BigInteger.TWO.pow(100).add(BigInteger.valueOf(277)));
+
+        KeyGenerator deepGenerator = new KeyGenerator(deepParameters);
+        Encryptor deepEncryptor = new Encryptor(deepParameters, deepGenerator.getPublicKey());
+        Decryptor deepDecryptor = new Decryptor(deepParameters, deepGenerator.getSecretKey());
+        Evaluator deepEvaluator = new Evaluator(deepParameters);
+        RelinearizationKeys deepKeys = deepGenerator.getRelinearizationKeys();
+
+        BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+        Ciphertext ciphertext = deepEncryptor.encrypt(encoder.encode(message));
+
+        BigInteger[] squared = encoder.decode(deepDecryptor.decrypt(deepEvaluator.square(ciphertext, deepKeys), null));
+        BigInteger[] cubed = encoder.decode(deepDecryptor.decrypt(deepEvaluator.power(ciphertext, 3, deepKeys), null));
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            assertEquals(message[i].pow(2).mod(plaintextModulus), squared[i]);
+            assertEquals(message[i].pow(3).mod(plaintextModulus), cubed[i]);
+        }
+    }
+
+    @Test
+    public void testPolynomialEvaluation() {
+        Parameters deepParameters = new Parameters(polynomialDegree, plaintextModulus, BigInteger.TWO.pow(100).add(BigInteger.valueOf(277)));
+
+        KeyGenerator deepGenerator = new KeyGenerator(deepParameters);
+        Encryptor deepEncryptor = new Encryptor(deepParameters, deepGenerator.getPublicKey());
+        Decryptor deepDecryptor = new Decryptor(deepParameters, deepGenerator.getSecretKey());
+        Evaluator deepEvaluator = new Evaluator(deepParameters);
+        RelinearizationKeys deepKeys = deepGenerator.getRelinearizationKeys();
+
+        BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+        Ciphertext ciphertext = deepEncryptor.encrypt(encoder.encode(message));
+
+        // a block of zero coefficients and a negative coefficient, the trailing zero does not increase the degree
+        BigInteger[] coefficients = {
+                BigInteger.valueOf(7), BigInteger.ZERO, BigInteger.ZERO, BigInteger.valueOf(-3),
+                BigInteger.valueOf(12), BigInteger.valueOf(500), BigInteger.valueOf(2), BigInteger.ZERO
+        };
+
+        BigInteger[] result = encoder.decode(deepDecryptor.decrypt(
+                deepEvaluator.evaluatePolynomial(ciphertext, coefficients, deepKeys), null));
+        BigInteger[] constant = encoder.decode(deepDecryptor.decrypt(
+                deepEvaluator.evaluatePolynomial(ciphertext, new BigInteger[] {BigInteger.valueOf(42)}, deepKeys), null));
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            BigInteger expected = BigInteger.ZERO;
+            for (int j = coefficients.length - 1; j >= 0; j--) {
+                expected = expected.multiply(message[i]).add(coefficients[j]);
+            }
+
+            assertEquals(expected.mod(plaintextModulus), result[i]);
+            assertEquals(BigInteger.valueOf(42), constant[i]);
+        }
+    }
+
+    @Test
+    public void testConcurrentMultiplication() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            Evaluator concurrentEvaluator = new Evaluator(parameters, executor, 1);
+
+            BigInteger[] message1 = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+            BigInteger[] message2 = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+
+            Ciphertext ciphertext1 = encryptor.encrypt(encoder.encode(message1));
+            Ciphertext ciphertext2 = encryptor.encrypt(encoder.encode(message2));
+
+            BigInteger[] product = encoder.decode(decryptor.decrypt(concurrentEvaluator.multiply(ciphertext1, ciphertext2, rk), null));
+            BigInteger[] squared = encoder.decode(decryptor.decrypt(concurrentEvaluator.square(ciphertext1, rk), null));
+
+            for (int i = 0; i < polynomialDegree; i++) {
+                assertEquals(message1[i].multiply(message2[i]).mod(plaintextModulus), product[i]);
+                assertEquals(message1[i].pow(2).mod(plaintextModulus), squared[i]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentInnerProduct() {
+        // fewer threads than pairs, so the nested multiplication tasks must not wait for threads held by the pairs
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Evaluator concurrentEvaluator = new Evaluator(parameters, executor, 1);
+            int length = 6;
+            List<Ciphertext> ciphertexts = new ArrayList<>();
+            List<Plaintext> plaintexts = new ArrayList<>();
+            BigInteger[] expected = new BigInteger[polynomialDegree];
+            Arrays.fill(expected, BigInteger.ZERO);
+
+            for (int i = 0; i < length; i++) {
+                BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+                ciphertexts.add(encryptor.encrypt(encoder.encode(message)));
+                plaintexts.add(encoder.encode(message));
+
+                for (int j = 0; j < polynomialDegree; j++) {
+                    expected[j] = expected[j].add(message[j].pow(2));
+                }
+            }
+
+            BigInteger[] decoded = encoder.decode(decryptor.decrypt(
+                    concurrentEvaluator.innerProduct(ciphertexts, ciphertexts, rk), null));
+            BigInteger[] decodedPlain = encoder.decode(decryptor.decrypt(
+                    concurrentEvaluator.innerProduct(ciphertexts, plaintexts), null));
+
+            for (int j = 0; j < polynomialDegree; j++) {
+                assertEquals(expected[j].mod(plaintextModulus), decoded[j]);
+                assertEquals(expected[j].mod(plaintextModulus), decodedPlain[j]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testModulusSwitchingNoiseIsCentered() {
+        BigInteger firstPrime = BigInteger.valueOf(1073741789);
+        BigInteger secondPrime = BigInteger.valueOf(1073741783);
+        BigInteger modulus = firstPrime.multiply(secondPrime);
+        Parameters chainParameters = new Parameters(polynomialDegree, plaintextModulus, List.of(modulus, firstPrime));
+
+        KeyGenerator chainGenerator = new KeyGenerator(chainParameters);
+        Encryptor chainEncryptor = new Encryptor(chainParameters, chainGenerator.getPublicKey());
+        Evaluator chainEvaluator = new Evaluator(chainParameters);
+        Polynomial secret = chainGenerator.getSecretKey().getSecret();
+        BigInteger[] zeros = new BigInteger[polynomialDegree];
+        Arrays.fill(zeros, BigInteger.ZERO);
+        Plaintext zero = encoder.encode(zeros);
+
+        // for an encryption of zero c0 + c1*s mod q' is the noise, which is reduced by q/q' to about the rounding error
+        int numberOfCiphertexts = 500;
+        long noiseSum = 0;
+
+        for (int i = 0; i < numberOfCiphertexts; i++) {
+            Ciphertext switched = chainEvaluator.modSwitch(chainEncryptor.encrypt(zero));
+            BigInteger[] noise = switched.getEncryptionPolynomial()
+                    .add(switched.getAdditionalComponent().multiply(secret, firstPrime), firstPrime)
+                    .getCoefficients();
+
+            for (BigInteger coefficient : noise) {
+                BigInteger centered = coefficient.compareTo(firstPrime.shiftRight(1)) > 0 ? coefficient.subtract(firstPrime) : coefficient;
+                noiseSum += centered.longValueExact();
+            }
+        }
+
+        // the mean of rounding errors is 0 with a standard error below 0.02, a floor division would give a mean of -1/2
+        double mean = (double) noiseSum / (numberOfCiphertexts * polynomialDegree);
+        assertEquals(0, mean, 0.1);
+    }
+
+    @Test
+    public void testModulusSwitching() {
+        BigInteger firstPrime = BigInteger.valueOf(1073741789);
+        BigInteger secondPrime = BigInteger.valueOf(1073741783);
+        BigInteger thirdPrime = BigInteger.valueOf(1073741741);
+
+        List<BigInteger> modulusChain = List.of(
+                firstPrime.multiply(secondPrime).multiply(thirdPrime),
+                firstPrime.multiply(secondPrime),
+                firstPrime);
+        Parameters chainParameters = new Parameters(polynomialDegree, plaintextModulus, modulusChain);
+
+        // the relinearization noise of a power of two base is small enough for the smaller moduli of the chain
+        KeyGenerator chainGenerator = new KeyGenerator(chainParameters, 16, true);
+        Encryptor chainEncryptor = new Encryptor(chainParameters, chainGenerator.getPublicKey());
+        Decryptor chainDecryptor = new Decryptor(chainParameters, chainGenerator.getSecretKey());
+        Evaluator chainEvaluator = new Evaluator(chainParameters);
+        RelinearizationKeys chainKeys = chainGenerator.getRelinearizationKeys();
+
+        BigInteger[] message1 = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+        BigInteger[] message2 = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+
+        Ciphertext ciphertext1 = chainEncryptor.encrypt(encoder.encode(message1));
+        Ciphertext ciphertext2 = chainEncryptor.encrypt(encoder.encode(message2));
+
+        Ciphertext switchedProduct = chainEvaluator.modSwitch(chainEvaluator.multiply(ciphertext1, ciphertext2, chainKeys));
+        assertEquals(modulusChain.get(1), switchedProduct.getModulus());
+
+        // multiplication after switching uses the keys generated for the full modulus
+        Ciphertext switched1 = chainEvaluator.modSwitch(ciphertext1);
+        Ciphertext switched2 = chainEvaluator.modSwitch(ciphertext2);
+        Ciphertext lowerLevelResult = chainEvaluator.add(chainEvaluator.multiply(switched1, switched2, chainKeys), switched1);
+
+        Ciphertext smallestModulusResult = chainEvaluator.modSwitch(lowerLevelResult);
+        assertEquals(modulusChain.get(2), smallestModulusResult.getModulus());
+
+        BigInteger[] decodedProduct = encoder.decode(chainDecryptor.decrypt(switchedProduct, null));
+        BigInteger[] decodedLowerLevelResult = encoder.decode(chainDecryptor.decrypt(lowerLevelResult, null));
+        BigInteger[] decodedSmallestModulusResult = encoder.decode(chainDecryptor.decrypt(smallestModulusResult, null));
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            BigInteger product = message1[i].multiply(message2[i]).mod(plaintextModulus);
+            BigInteger expected = product.add(message1[i]).mod(plaintextModulus);
+
+            assertEquals(product, decodedProduct[i]);
+            assertEquals(expected, decodedLowerLevelResult[i]);
+            assertEquals(expected, decodedSmallestModulusResult[i]);
+        }
+
+        assertThrows(UnsupportedOperationException.class, () -> chainEvaluator.modSwitch(smallestModulusResult));
+        assertThrows(UnsupportedOperationException.class, () -> chainEvaluator.add(ciphertext1, switched2));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Parameters(polynomialDegree, plaintextModulus, List.of(firstPrime, secondPrime)));
+    }
+
+    @Test
+    public void testRotations() {
+        GaloisKeys galoisKeys = generator.generateGaloisKeys();
+        int rowSize = polynomialDegree / 2;
+
+        BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(100), polynomialDegree);
+        Ciphertext ciphertext = encryptor.encrypt(encoder.encode(message));
+
+        BigInteger[] rotatedByOne = encoder.decode(decryptor.decrypt(evaluator.rotateRows(ciphertext, 1, galoisKeys), null));
+        // there are keys only for the powers of two, so the rotation by 3 is composed of two rotations
+        BigInteger[] rotatedByThree = encoder.decode(decryptor.decrypt(evaluator.rotateRows(ciphertext, 3, galoisKeys), null));
+        BigInteger[] rotatedRight = encoder.decode(decryptor.decrypt(evaluator.rotateRows(ciphertext, -1, galoisKeys), null));
+        BigInteger[] swappedRows = encoder.decode(decryptor.decrypt(evaluator.rotateColumns(ciphertext, galoisKeys), null));
+        BigInteger[] sum = encoder.decode(decryptor.decrypt(evaluator.sumSlots(ciphertext, galoisKeys), null));
+
+        BigInteger expectedSum = BigInteger.ZERO;
+        for (BigInteger value : message) {
+            expectedSum = expectedSum.add(value);
+        }
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            int rowStart = i < rowSize ? 0 : rowSize;
+            int column = i - rowStart;
+
+            assertEquals(message[rowStart + (column + 1) % rowSize], rotatedByOne[i]);
+            assertEquals(message[rowStart + (column + 3) % rowSize], rotatedByThree[i]);
+            assertEquals(message[rowStart + (column + rowSize - 1) % rowSize], rotatedRight[i]);
+            assertEquals(message[(i + rowSize) % polynomialDegree], swappedRows[i]);
+            assertEquals(expectedSum.mod(plaintextModulus), sum[i]);
+        }
+    }
+
+    @Test
+    public void testHoistedRotations() {
+        int[] steps = {0, 1, 2, 3};
+        GaloisKeys galoisKeys = generator.generateGaloisKeys(steps);
+        int rowSize = polynomialDegree / 2;
+
+        BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(100), polynomialDegree);
+        Ciphertext ciphertext = encryptor.encrypt(encoder.encode(message));
+
+        List<Ciphertext> rotated = evaluator.rotateRowsHoisted(ciphertext, steps, galoisKeys);
+        assertEquals(steps.length, rotated.size());
+
+        for (int k = 0; k < steps.length; k++) {
+            BigInteger[] decoded = encoder.decode(decryptor.decrypt(rotated.get(k), null));
+
+            for (int i = 0; i < polynomialDegree; i++) {
+                int rowStart = i < rowSize ? 0 : rowSize;
+                assertEquals(message[rowStart + (i - rowStart + steps[k]) % rowSize], decoded[i]);
+            }
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRotationWithoutGaloisKeys() {
+        GaloisKeys galoisKeys = generator.generateGaloisKeys(new int[] {1});
+        Ciphertext ciphertext = encryptor.encrypt(encoder.encode(
+                SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(100), polynomialDegree)));
+
+        evaluator.rotateRows(ciphertext, 2, galoisKeys);
+    }
+
+    @Test
+    public void testLazyKeyGeneration() {
+        KeyGenerator lazyGenerator = KeyGenerator.builder(parameters).build();
+
+        Encryptor lazyEncryptor = new Encryptor(parameters, lazyGenerator.getPublicKey());
+        Decryptor lazyDecryptor = new Decryptor(parameters, lazyGenerator.getSecretKey());
+
+        assertSame(lazyGenerator.getPublicKey(), lazyGenerator.getPublicKey());
+
+        BigInteger[] message = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+        Ciphertext ciphertext = lazyEncryptor.encrypt(encoder.encode(message));
+
+        RelinearizationKeys lazyKeys = lazyGenerator.getRelinearizationKeys();
+        assertSame(lazyKeys, lazyGenerator.getRelinearizationKeys());
+
+        BigInteger[] squared = encoder.decode(lazyDecryptor.decrypt(evaluator.square(ciphertext, lazyKeys), null));
+        for (int i = 0; i < polynomialDegree; i++) {
+            assertEquals(message[i].pow(2).mod(plaintextModulus), squared[i]);
+        }
+    }
+
+    @Test
+    public void testStreamedRelinearizationKeys() throws IOException, ClassNotFoundException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            KeyGenerator lazyGenerator = KeyGenerator.builder(parameters)
+                    .powerOfTwoDecomposition(16, true)
+                    .executor(executor)
+                    .build();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            lazyGenerator.writeRelinearizationKeys(output);
+
+            RelinearizationKeys streamedKeys = RelinearizationKeys.read(new ByteArrayInputStream(output.toByteArray()));
+
+            assertTrue(streamedKeys.isPowerOfTwoBase());
+            assertTrue(streamedKeys.isBalancedDecomposition());
+
+            Encryptor lazyEncryptor = new Encryptor(parameters, lazyGenerator.getPublicKey());
+            Decryptor lazyDecryptor = new Decryptor(parameters, lazyGenerator.getSecretKey());
+
+            BigInteger[] message1 = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+            BigInteger[] message2 = SamplingOperations.normalSampling(BigInteger.ZERO, BigInteger.valueOf(20), polynomialDegree);
+
+            Ciphertext product = evaluator.multiply(lazyEncryptor.encrypt(encoder.encode(message1)),
+                    lazyEncryptor.encrypt(encoder.encode(message2)), streamedKeys);
+            BigInteger[] decoded = encoder.decode(lazyDecryptor.decrypt(product, null));
+
+            for (int i = 0; i < polynomialDegree; i++) {
+                assertEquals(message1[i].multiply(message2[i]).mod(plaintextModulus), decoded[i]);
+            }
+
+            // the streamed keys are not kept, so a second key set is not generated silently
+            assertThrows(IllegalStateException.class, lazyGenerator::getRelinearizationKeys);
+            assertThrows(IllegalStateException.class, () -> lazyGenerator.writeRelinearizationKeys(new ByteArrayOutputStream()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedStreamOfRelinearizationKeys() throws IOException, ClassNotFoundException {
+        ForkJoinPool executor = new ForkJoinPool(2);
+
+        try {
+            KeyGenerator lazyGenerator = KeyGenerator.builder(parameters)
+                    .powerOfTwoDecomposition(1, false)
+                    .executor(executor)
+                    .build();
+
+            OutputStream failingOutput = new OutputStream() {
+                private int written;
+
+                @Override
+                public void write(int b) throws IOException {
+                    if (++written > 2048) {
+                        throw new IOException("stream closed");
+                    }
+                }
+            };
+
+            assertThrows(IOException.class, () -> lazyGenerator.writeRelinearizationKeys(failingOutput));
+
+            // no complete key set was written, so the keys can be streamed again
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            lazyGenerator.writeRelinearizationKeys(output);
+            RelinearizationKeys streamedKeys = RelinearizationKeys.read(new ByteArrayInputStream(output.toByteArray()));
+            assertEquals(ciphertextModulus.bitLength(), streamedKeys.getKeys().size());
+
+            // a failed stream does not prevent generating the keys in memory either
+            KeyGenerator otherGenerator = KeyGenerator.builder(parameters).executor(executor).build();
+            assertThrows(IOException.class, () -> otherGenerator.writeRelinearizationKeys(failingOutput));
+            assertNotNull(otherGenerator.getRelinearizationKeys());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamedRelinearizationKeysWindow() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        // the number of bytes written to the stream when each level was submitted
+        List<Integer> writtenOnSubmission = new ArrayList<>();
+
+        ForkJoinPool executor = new ForkJoinPool(2) {
+            @Override
+            public void execute(Runnable task) {
+                synchronized (writtenOnSubmission) {
+                    writtenOnSubmission.add(output.size());
+                }
+                super.execute(task);
+            }
+        };
+
+        try {
+            KeyGenerator lazyGenerator = KeyGenerator.builder(parameters)
+                    .powerOfTwoDecomposition(1, false)
+                    .executor(executor)
+                    .build();
+
+            lazyGenerator.writeRelinearizationKeys(output);
+
+            assertEquals(ciphertextModulus.bitLength(), writtenOnSubmission.size());
+            // with all levels submitted at once nothing would be written before the last submission
+            assertTrue(writtenOnSubmission.get(writtenOnSubmission.size() - 1) > writtenOnSubmission.get(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLazyKeyGenerationWithIncorrectBitCount() {
+        KeyGenerator.builder(parameters).powerOfTwoDecomposition(0, false).build();
+    }
 }
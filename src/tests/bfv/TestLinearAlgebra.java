@@ -0,0 +1,116 @@
+package tests.bfv;
+
+import org.junit.Before;
+import org.junit.Test;
+import scheme.bfv.*;
+import utils.operations.SamplingOperations;
+import utils.structures.Ciphertext;
+
+import java.math.BigInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class TestLinearAlgebra {
+
+    private int polynomialDegree;
+    private int rowSize;
+    private BigInteger plaintextModulus;
+    private Parameters parameters;
+    private BatchEncoder encoder;
+    private Encryptor encryptor;
+    private Decryptor decryptor;
+    private LinearAlgebra linearAlgebra;
+    private GaloisKeys galoisKeys;
+
+    @Before
+    public void setUp() {
+        polynomialDegree = 16;
+        rowSize = polynomialDegree / 2;
+        plaintextModulus = BigInteger.valueOf(97);
+        BigInteger ciphertextModulus = BigInteger.TWO.pow(100).add(BigInteger.valueOf(277));
+
+        parameters = new Parameters(polynomialDegree, plaintextModulus, ciphertextModulus);
+        KeyGenerator generator = new KeyGenerator(parameters);
+
+        encoder = new BatchEncoder(parameters);
+        encryptor = new Encryptor(parameters, generator.getPublicKey());
+        decryptor = new Decryptor(parameters, generator.getSecretKey());
+        linearAlgebra = new LinearAlgebra(parameters, new Evaluator(parameters), encoder);
+        galoisKeys = generator.generateGaloisKeys(linearAlgebra.getRequiredRotationSteps());
+    }
+
+    @Test
+    public void testMatrixVectorProduct() {
+        checkMatrixVectorProduct(linearAlgebra);
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentMatrixVectorProduct() {
+        // fewer threads than blocks, so the operations nested in the blocks must not wait for threads held by the blocks
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            checkMatrixVectorProduct(new LinearAlgebra(parameters, new Evaluator(parameters, executor, 1), encoder));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void checkMatrixVectorProduct(LinearAlgebra linearAlgebra) {
+        BigInteger[][] matrix = new BigInteger[rowSize][];
+        for (int i = 0; i < rowSize; i++) {
+            matrix[i] = SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, rowSize);
+        }
+
+        BigInteger[] vectors = SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, polynomialDegree);
+        Ciphertext ciphertext = encryptor.encrypt(encoder.encode(vectors));
+
+        BigInteger[] result = encoder.decode(decryptor.decrypt(linearAlgebra.multiplyMatrix(matrix, ciphertext, galoisKeys), null));
+
+        // each row of the slots holds a separate vector
+        for (int rowStart = 0; rowStart < polynomialDegree; rowStart += rowSize) {
+            for (int i = 0; i < rowSize; i++) {
+                BigInteger expected = BigInteger.ZERO;
+                for (int j = 0; j < rowSize; j++) {
+                    expected = expected.add(matrix[i][j].multiply(vectors[rowStart + j]));
+                }
+
+                assertEquals(expected.mod(plaintextModulus), result[rowStart + i]);
+            }
+        }
+    }
+
+    @Test
+    public void testRectangularMatrixVectorProduct() {
+        BigInteger[][] matrix = {
+                {BigInteger.ONE, BigInteger.TWO, BigInteger.ZERO, BigInteger.valueOf(-1), BigInteger.valueOf(5)},
+                {BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO},
+                {BigInteger.valueOf(3), BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.valueOf(7)}
+        };
+
+        BigInteger[] vectors = SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, polynomialDegree);
+        Ciphertext ciphertext = encryptor.encrypt(encoder.encode(vectors));
+
+        BigInteger[] result = encoder.decode(decryptor.decrypt(linearAlgebra.multiplyMatrix(matrix, ciphertext, galoisKeys), null));
+
+        for (int i = 0; i < rowSize; i++) {
+            BigInteger expected = BigInteger.ZERO;
+            for (int j = 0; i < matrix.length && j < matrix[i].length; j++) {
+                expected = expected.add(matrix[i][j].multiply(vectors[j]));
+            }
+
+            assertEquals(expected.mod(plaintextModulus), result[i]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMatrixWithTooManyColumns() {
+        BigInteger[][] matrix = {SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, rowSize + 1)};
+        Ciphertext ciphertext = encryptor.encrypt(encoder.encode(
+                SamplingOperations.normalSampling(BigInteger.ZERO, plaintextModulus, polynomialDegree)));
+
+        linearAlgebra.multiplyMatrix(matrix, ciphertext, galoisKeys);
+    }
+}
@@ -0,0 +1,208 @@
+package tests.utils.operations;
+
+import org.junit.Test;
+import utils.operations.CounterModeGenerator;
+import utils.operations.DiscreteGaussianSampler;
+import utils.operations.SamplingOperations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TestSamplingOperations {
+
+    @Test
+    public void testUniformSampleFromSeed() {
+        BigInteger modulus = BigInteger.valueOf(65537);
+        byte[] seed = CounterModeGenerator.generateSeed();
+
+        BigInteger[] first = SamplingOperations.uniformSampleFromSeed(seed, modulus, 1024);
+        BigInteger[] second = SamplingOperations.uniformSampleFromSeed(seed, modulus, 1024);
+        BigInteger[] other = SamplingOperations.uniformSampleFromSeed(CounterModeGenerator.generateSeed(), modulus, 1024);
+
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, other));
+
+        for (BigInteger value : first) {
+            assertTrue(value.signum() >= 0 && value.compareTo(modulus) < 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUniformSampleFromSeedWithIncorrectSeed() {
+        SamplingOperations.uniformSampleFromSeed(new byte[16], BigInteger.TEN, 8);
+    }
+
+    @Test
+    public void testUniformSampleFromSeedWithLargeModulus() {
+        BigInteger modulus = BigInteger.TWO.pow(100).add(BigInteger.valueOf(277));
+        byte[] seed = CounterModeGenerator.generateSeed();
+
+        BigInteger[] samples = SamplingOperations.uniformSampleFromSeed(seed, modulus, 256);
+
+        assertArrayEquals(samples, SamplingOperations.uniformSampleFromSeed(seed, modulus, 256));
+        for (BigInteger value : samples) {
+            assertTrue(value.signum() >= 0 && value.compareTo(modulus) < 0);
+        }
+    }
+
+    @Test
+    public void testCounterModeGenerator() {
+        byte[] seed = CounterModeGenerator.generateSeed();
+        long[] first = new long[1000];
+        long[] second = new long[1000];
+
+        new CounterModeGenerator(seed).nextLongs(first);
+        new CounterModeGenerator(seed).nextLongs(second);
+        assertArrayEquals(first, second);
+
+        CounterModeGenerator generator = new CounterModeGenerator(seed);
+        CounterModeGenerator split = generator.split();
+        assertNotEquals(generator.nextLong(), split.nextLong());
+    }
+
+    @Test
+    public void testCounterModeGeneratorSmallValues() {
+        byte[] seed = CounterModeGenerator.generateSeed();
+        CounterModeGenerator generator = new CounterModeGenerator(seed);
+        CounterModeGenerator reference = new CounterModeGenerator(seed);
+
+        // 64 single bits are taken from the first value of the stream, lowest bit first
+        long value = reference.nextLong();
+        for (int i = 0; i < Long.SIZE; i++) {
+            assertEquals((int) (value >>> i) & 1, generator.nextInt(2));
+        }
+        assertEquals(reference.nextLong(), generator.nextLong());
+
+        int[] counts = new int[3];
+        for (int i = 0; i < 30000; i++) {
+            counts[generator.nextInt(3)]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - 10000) < 600);
+        }
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void testCounterModeGeneratorSerialization() throws IOException {
+        new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(CounterModeGenerator.current());
+    }
+
+    @Test
+    public void testCounterModeGeneratorUniformity() {
+        int modulus = 7;
+        int numberOfSamples = 70000;
+        long[] samples = new long[numberOfSamples];
+        int[] counts = new int[modulus];
+
+        CounterModeGenerator.current().nextUniform(samples, modulus);
+        for (long sample : samples) {
+            counts[(int) sample]++;
+        }
+
+        // each count is expected to be 10000 with a standard deviation below 100
+        for (int count : counts) {
+            assertTrue(Math.abs(count - numberOfSamples / modulus) < 600);
+        }
+    }
+
+    @Test
+    public void testNormalSamplingBounds() {
+        BigInteger lowerBound = BigInteger.valueOf(-5);
+        BigInteger upperBound = BigInteger.valueOf(20);
+
+        for (BigInteger value : SamplingOperations.normalSampling(lowerBound, upperBound, 1000)) {
+            assertTrue(value.compareTo(lowerBound) >= 0 && value.compareTo(upperBound) < 0);
+        }
+    }
+
+    @Test
+    public void testHammingWeightSample() {
+        for (int hammingWeight : new int[] {0, 1, 64, 200, 256}) {
+            BigInteger[] samples = SamplingOperations.hammingWeightSample(256, hammingWeight);
+
+            int nonzero = 0;
+            for (BigInteger sample : samples) {
+                assertNotNull(sample);
+                assertTrue(sample.abs().compareTo(BigInteger.ONE) <= 0);
+                nonzero += sample.signum() != 0 ? 1 : 0;
+            }
+
+            assertEquals(hammingWeight, nonzero);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHammingWeightSampleWithIncorrectWeight() {
+        SamplingOperations.hammingWeightSample(16, 17);
+    }
+
+    @Test
+    public void testTernarySample() {
+        byte[] samples = new byte[100001];
+        int[] counts = new int[3];
+
+        SamplingOperations.ternarySample(samples, CounterModeGenerator.current());
+        for (byte sample : samples) {
+            counts[sample + 1]++;
+        }
+
+        // probabilities 1/4, 1/2, 1/4 with standard deviations below 160
+        assertTrue(Math.abs(counts[0] - samples.length / 4) < 1000);
+        assertTrue(Math.abs(counts[1] - samples.length / 2) < 1000);
+        assertTrue(Math.abs(counts[2] - samples.length / 4) < 1000);
+    }
+
+    @Test
+    public void testCenteredBinomialSample() {
+        for (int eta : new int[] {2, 3, 21, 32}) {
+            BigInteger[] samples = SamplingOperations.centeredBinomialSample(20000, eta);
+            double sumOfSquares = 0;
+
+            for (BigInteger sample : samples) {
+                assertTrue(sample.abs().intValue() <= eta);
+                sumOfSquares += sample.pow(2).doubleValue();
+            }
+
+            // the variance is eta/2
+            double variance = sumOfSquares / samples.length;
+            assertEquals(eta / 2.0, variance, eta * 0.1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCenteredBinomialSampleWithIncorrectParameter() {
+        SamplingOperations.centeredBinomialSample(8, 0);
+    }
+
+    @Test
+    public void testDiscreteGaussianSample() {
+        for (double standardDeviation : new double[] {1.5, 3.2, 19.2}) {
+            DiscreteGaussianSampler sampler = new DiscreteGaussianSampler(standardDeviation);
+            int[] samples = new int[50000];
+            double sum = 0;
+            double sumOfSquares = 0;
+
+            sampler.sample(samples, CounterModeGenerator.current());
+            for (int sample : samples) {
+                assertTrue(Math.abs(sample) <= sampler.getBound());
+                sum += sample;
+                sumOfSquares += (double) sample * sample;
+            }
+
+            double variance = sumOfSquares / samples.length;
+            assertEquals(0, sum / samples.length, standardDeviation * 0.05);
+            assertEquals(standardDeviation * standardDeviation, variance, standardDeviation * standardDeviation * 0.05);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDiscreteGaussianSampleWithIncorrectStandardDeviation() {
+        SamplingOperations.gaussianSample(8, -1);
+    }
+}
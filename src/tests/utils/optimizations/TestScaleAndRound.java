@@ -0,0 +1,68 @@
+package tests.utils.optimizations;
+
+import org.junit.Assert;
+import org.junit.Test;
+import utils.optimizations.ScaleAndRound;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+public class TestScaleAndRound {
+
+    private final Random random = new Random();
+
+    private static BigInteger expected(BigInteger value, BigInteger numerator, BigInteger denominator) {
+        return new BigDecimal(value.multiply(numerator))
+                .divide(new BigDecimal(denominator), 0, RoundingMode.HALF_DOWN)
+                .toBigIntegerExact();
+    }
+
+    private void assertScaling(BigInteger numerator, BigInteger denominator, int valueBitLength) {
+        ScaleAndRound scaling = new ScaleAndRound(numerator, denominator);
+
+        for (int i = 0; i < 1000; i++) {
+            BigInteger value = new BigInteger(valueBitLength, random);
+            value = random.nextBoolean() ? value : value.negate();
+
+            Assert.assertEquals(expected(value, numerator, denominator), scaling.apply(value));
+        }
+    }
+
+    @Test
+    public void testScalingOfCoefficients() {
+        BigInteger denominator = new BigInteger("799999999999999");
+        assertScaling(BigInteger.valueOf(881), denominator, denominator.bitLength() - 1);
+    }
+
+    @Test
+    public void testScalingWithLargestFastModulus() {
+        BigInteger denominator = BigInteger.ONE.shiftLeft(62).subtract(BigInteger.valueOf(57));
+        assertScaling(denominator.subtract(BigInteger.ONE), denominator, 61);
+    }
+
+    @Test
+    public void testScalingOfValuesBeyondLongRange() {
+        assertScaling(BigInteger.valueOf(881), new BigInteger("799999999999999"), 110);
+    }
+
+    @Test
+    public void testScalingWithLargeModulus() {
+        assertScaling(BigInteger.valueOf(65537), BigInteger.TWO.pow(100).add(BigInteger.valueOf(277)), 99);
+    }
+
+    @Test
+    public void testTiesRoundedTowardsZero() {
+        ScaleAndRound scaling = new ScaleAndRound(BigInteger.ONE, BigInteger.valueOf(4));
+
+        Assert.assertEquals(BigInteger.ZERO, scaling.apply(BigInteger.TWO));
+        Assert.assertEquals(BigInteger.ONE, scaling.apply(BigInteger.valueOf(3)));
+        Assert.assertEquals(BigInteger.ONE.negate(), scaling.apply(BigInteger.valueOf(-6)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncorrectFraction() {
+        new ScaleAndRound(BigInteger.TEN, BigInteger.TWO);
+    }
+}
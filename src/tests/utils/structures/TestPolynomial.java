@@ -8,6 +8,7 @@ import utils.operations.AlgebraicOperations;
 import utils.optimizations.ChineseRemainderTheorem;
 import utils.optimizations.NumberTheoreticTransform;
 import utils.structures.Polynomial;
+import utils.structures.TransformedPolynomial;
 
 import java.math.BigInteger;
 import java.util.Arrays;
@@ -144,6 +145,19 @@ public class TestPolynomial {
         Assert.assertEquals(expected, actual);
     }
 
+    @Test
+    public void testTransformedMultiplication() {
+        ChineseRemainderTheorem chineseRemainderTheorem = initializeCRTObject();
+
+        TransformedPolynomial transformedFirst = TransformedPolynomial.forwardTransform(multiplicandFirst, chineseRemainderTheorem);
+        TransformedPolynomial transformedSecond = TransformedPolynomial.forwardTransform(multiplicandSecond, chineseRemainderTheorem);
+
+        Polynomial actual = transformedFirst.multiply(transformedSecond).inverseTransform(chineseRemainderTheorem);
+        Polynomial expected = multiplicandFirst.multiply(multiplicandSecond);
+
+        Assert.assertEquals(expected, actual);
+    }
+
     @Test
     public void testFFTMultiplication() {
         Polynomial actual = multiplicandFirst.multiplyFFT(multiplicandSecond);
@@ -155,6 +169,45 @@ public class TestPolynomial {
         Assert.assertEquals(expected, actual);
     }
 
+    @Test
+    public void testPowerOfTwoDecomposition() {
+        for (boolean balanced : new boolean[] {false, true}) {
+            Polynomial[] digits = multiplicandFirst.decomposeCoefficientsPowerOfTwo(2, 3, balanced);
+
+            Polynomial recomposed = digits[0]
+                    .add(digits[1].multiplyByScalar(BigInteger.valueOf(4), null))
+                    .add(digits[2].multiplyByScalar(BigInteger.valueOf(16), null));
+
+            Assert.assertEquals(multiplicandFirst, recomposed);
+        }
+    }
+
+    @Test
+    public void testGaloisAutomorphism() {
+        // x + 4x^2 + 5x^3 -> x^3 + 4x^6 + 5x^9 = 5x - 4x^2 + x^3, since x^4 = -1
+        Polynomial expected = new Polynomial(powerOfTwoDegree, Utilities.transformArrayValuesTo(new int[] {0, 5, 69, 1}));
+
+        Assert.assertEquals(expected, multiplicandFirst.applyGaloisAutomorphism(3, primeModulus));
+    }
+
+    @Test
+    public void testTransformedGaloisAutomorphism() {
+        ChineseRemainderTheorem chineseRemainderTheorem = initializeCRTObject();
+
+        for (int galoisElement = 1; galoisElement < 2 * powerOfTwoDegree; galoisElement += 2) {
+            Polynomial actual = TransformedPolynomial.forwardTransform(multiplicandFirst, chineseRemainderTheorem)
+                    .applyGaloisAutomorphism(galoisElement)
+                    .inverseTransform(chineseRemainderTheorem);
+
+            Assert.assertEquals(multiplicandFirst.applyGaloisAutomorphism(galoisElement, null), actual);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGaloisAutomorphismWithEvenElement() {
+        multiplicandFirst.applyGaloisAutomorphism(2, primeModulus);
+    }
+
     @Test
     public void testEvaluateOn() {
         BigInteger actual = multiplicandSecond.evaluateOnValue(BigInteger.valueOf(5));
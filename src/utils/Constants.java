@@ -36,4 +36,37 @@ public class Constants {
 
     public static final String INVALID_VECTOR_LENGTH_EXCEPTION =
             "Invalid length of input vector %d! Length of vector to be reversed must be a power of two.";
+
+    public static final String NON_MATCHING_NUMBER_OF_RESIDUES_EXCEPTION =
+            "Number of transformed residues %d is not equal to the number of primes %d";
+
+    public static final String NON_MATCHING_TRANSFORMATION_PRIMES_EXCEPTION =
+            "Polynomials must be transformed with respect to the same primes to perform %s";
+
+    public static final String INCORRECT_DECOMPOSITION_BIT_COUNT_EXCEPTION =
+            "Incorrect value %d for decomposition bit count provided. Bit count should be in the range [1, %d]";
+
+    public static final String INCORRECT_GALOIS_ELEMENT_EXCEPTION =
+            "Incorrect value %d for Galois element provided. Galois element should be odd and in the range [1, %d)";
+
+    public static final String INCORRECT_SCALING_FRACTION_EXCEPTION =
+            "Incorrect scaling fraction %d/%d provided. Numerator should be positive and less than the denominator";
+
+    public static final String INCORRECT_SEED_LENGTH_EXCEPTION =
+            "Incorrect seed length %d provided. Seed should be exactly %d bytes long";
+
+    public static final String INCORRECT_BINOMIAL_PARAMETER_EXCEPTION =
+            "Incorrect value %d for centered binomial parameter provided. Parameter should be in the range [1, %d]";
+
+    public static final String INCORRECT_STANDARD_DEVIATION_EXCEPTION =
+            "Incorrect standard deviation %s provided. Standard deviation should be positive and not greater than %s";
+
+    public static final String INCORRECT_HAMMING_WEIGHT_EXCEPTION =
+            "Incorrect hamming weight %d provided. Hamming weight should be in the range [0, %d]";
+
+    public static final String INCORRECT_BOUND_EXCEPTION =
+            "Incorrect bound %d provided. Bound should be positive";
+
+    public static final String SEED_EXPANSION_UNAVAILABLE_EXCEPTION =
+            "The %s algorithm used for seed expansion is not available";
 }
@@ -0,0 +1,263 @@
+package utils.operations;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Random;
+
+import static utils.Constants.INCORRECT_BOUND_EXCEPTION;
+import static utils.Constants.INCORRECT_SEED_LENGTH_EXCEPTION;
+import static utils.Constants.SEED_EXPANSION_UNAVAILABLE_EXCEPTION;
+
+/**
+ * A cryptographically secure random generator, which expands a 32 byte seed with AES-256 in counter mode.
+ * The key stream is produced in blocks of several kilobytes, so the cost of the cipher is amortized over many samples,
+ * and the same seed always gives the same stream, which makes the generator usable as an extendable output function.
+ * The generator extends Random, so it can be passed to every sampling method accepting a Random,
+ * but an instance is not thread safe - current() returns a separate generator for each thread
+ * and split() derives an independent generator, e.g. for a task submitted to another thread.
+ * For the same reason the streams inherited from Random, e.g. ints(), must not be processed in parallel.
+ * setSeed has no effect on the stream and the generator cannot be serialized, since that would expose its key.
+ */
+public class CounterModeGenerator extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int SEED_BYTE_LENGTH = 32;
+    private static final String CIPHER_ALGORITHM = "AES/CTR/NoPadding";
+    private static final int BLOCK_BYTE_LENGTH = 16;
+    private static final int BUFFER_BYTE_LENGTH = 4096;
+
+    private static final SecureRandom seedGenerator = new SecureRandom();
+    private static final ThreadLocal<CounterModeGenerator> threadGenerators =
+            ThreadLocal.withInitial(() -> new CounterModeGenerator(generateSeed()));
+
+    private final transient Cipher cipher;
+    private final transient byte[] zeros;
+    private final transient byte[] buffer;
+    private transient int position;
+    // the unused bits of the last value drawn by next(bits), held in the lowest bitCount bits
+    private transient long bitBuffer;
+    private transient int bitCount;
+
+    /**
+     * Initializes a generator, which expands the given seed.
+     *
+     * @throws IllegalArgumentException if the seed is not SEED_BYTE_LENGTH bytes long.
+     */
+    public CounterModeGenerator(byte[] seed) {
+        super(0);
+
+        if(seed.length != SEED_BYTE_LENGTH) {
+            throw new IllegalArgumentException(String.format(INCORRECT_SEED_LENGTH_EXCEPTION, seed.length, SEED_BYTE_LENGTH));
+        }
+
+        try {
+            this.cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            this.cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(seed, "AES"), new IvParameterSpec(new byte[BLOCK_BYTE_LENGTH]));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(String.format(SEED_EXPANSION_UNAVAILABLE_EXCEPTION, CIPHER_ALGORITHM), e);
+        }
+
+        this.zeros = new byte[BUFFER_BYTE_LENGTH];
+        this.buffer = new byte[BUFFER_BYTE_LENGTH];
+        this.position = BUFFER_BYTE_LENGTH;
+    }
+
+    /**
+     * Returns the generator of the current thread, seeded from SecureRandom on first use.
+     */
+    public static CounterModeGenerator current() {
+        return threadGenerators.get();
+    }
+
+    /**
+     * Generates a fresh random seed of SEED_BYTE_LENGTH bytes with SecureRandom.
+     */
+    public static byte[] generateSeed() {
+        byte[] seed = new byte[SEED_BYTE_LENGTH];
+        seedGenerator.nextBytes(seed);
+        return seed;
+    }
+
+    /**
+     * Derives a new generator seeded with the next bytes of this stream.
+     * The two streams are independent, so the new generator can be handed to another thread.
+     */
+    public CounterModeGenerator split() {
+        byte[] seed = new byte[SEED_BYTE_LENGTH];
+        nextBytes(seed);
+        return new CounterModeGenerator(seed);
+    }
+
+    /**
+     * Returns the given number of random bits. The bits are taken from a 64 bit value, which is drawn only when
+     * fewer bits than requested are left, so e.g. 64 calls of nextBoolean() consume a single value of the stream.
+     */
+    @Override
+    protected int next(int bits) {
+        if(this.bitCount < bits) {
+            this.bitBuffer = nextLong();
+            this.bitCount = Long.SIZE;
+        }
+
+        int result = (int) (this.bitBuffer & (-1L >>> (Long.SIZE - bits)));
+        this.bitBuffer >>>= bits;
+        this.bitCount -= bits;
+
+        return result;
+    }
+
+    /**
+     * Returns a value uniformly distributed in [0, bound). Unlike Random.nextInt(int), which always draws 31 bits,
+     * only the bit length of bound - 1 is drawn and candidates not less than the bound are rejected,
+     * so e.g. nextInt(2) consumes a single bit.
+     *
+     * @throws IllegalArgumentException if the bound is not positive.
+     */
+    @Override
+    public int nextInt(int bound) {
+        if(bound <= 0) {
+            throw new IllegalArgumentException(String.format(INCORRECT_BOUND_EXCEPTION, bound));
+        }
+        if(bound == 1) {
+            return 0;
+        }
+
+        int bitLength = Integer.SIZE - Integer.numberOfLeadingZeros(bound - 1);
+
+        int candidate;
+        do {
+            candidate = next(bitLength);
+        } while (candidate >= bound);
+
+        return candidate;
+    }
+
+    @Override
+    public long nextLong() {
+        if(position + Long.BYTES > BUFFER_BYTE_LENGTH) {
+            refill();
+        }
+
+        long result = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            result = (result << 8) | (buffer[position++] & 0xFF);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        int offset = 0;
+
+        while (offset < bytes.length) {
+            if(position == BUFFER_BYTE_LENGTH) {
+                refill();
+            }
+
+            int length = Math.min(bytes.length - offset, BUFFER_BYTE_LENGTH - position);
+            System.arraycopy(buffer, position, bytes, offset, length);
+            position += length;
+            offset += length;
+        }
+    }
+
+    /**
+     * Fills the array with random 64 bit values.
+     */
+    public void nextLongs(long[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = nextLong();
+        }
+    }
+
+    /**
+     * Returns a value uniformly distributed in [0, modulus). Candidates with the bit length of modulus - 1
+     * are rejected until one is less than the modulus, so unlike a reduction the result is unbiased.
+     *
+     * @param modulus a positive value.
+     */
+    public long nextUniform(long modulus) {
+        long mask = -1L >>> Long.numberOfLeadingZeros(Math.max(modulus - 1, 1));
+
+        long candidate;
+        do {
+            candidate = nextLong() & mask;
+        } while (candidate >= modulus);
+
+        return candidate;
+    }
+
+    /**
+     * Fills the array with values uniformly distributed in [0, modulus).
+     */
+    public void nextUniform(long[] values, long modulus) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = nextUniform(modulus);
+        }
+    }
+
+    /**
+     * Returns the given number of values uniformly distributed in [0, modulus), sampled by rejection as nextUniform(long).
+     *
+     * @param modulus a positive value.
+     */
+    public BigInteger[] nextUniform(BigInteger modulus, int numberOfSamples) {
+        BigInteger[] samples = new BigInteger[numberOfSamples];
+
+        if(modulus.bitLength() < Long.SIZE) {
+            long longModulus = modulus.longValue();
+            for (int i = 0; i < numberOfSamples; i++) {
+                samples[i] = BigInteger.valueOf(nextUniform(longModulus));
+            }
+            return samples;
+        }
+
+        int bitLength = modulus.subtract(BigInteger.ONE).bitLength();
+        int byteLength = (bitLength + 7) / 8;
+        // the unused high bits of the first byte are cleared, so that at least half of the candidates are accepted
+        byte topByteMask = (byte) (0xFF >>> (8 * byteLength - bitLength));
+        // the leading zero byte keeps the candidate non negative
+        byte[] candidate = new byte[byteLength + 1];
+
+        for (int i = 0; i < numberOfSamples; ) {
+            nextBytes(candidate);
+            candidate[0] = 0;
+            candidate[1] &= topByteMask;
+
+            BigInteger value = new BigInteger(candidate);
+            if(value.compareTo(modulus) < 0) {
+                samples[i++] = value;
+            }
+        }
+
+        return samples;
+    }
+
+    private void writeObject(ObjectOutputStream output) throws IOException {
+        throw new NotSerializableException(CounterModeGenerator.class.getName());
+    }
+
+    private void readObject(ObjectInputStream input) throws IOException {
+        throw new NotSerializableException(CounterModeGenerator.class.getName());
+    }
+
+    private void refill() {
+        // encrypting zeros in counter mode gives the key stream itself
+        try {
+            this.cipher.update(zeros, 0, BUFFER_BYTE_LENGTH, buffer, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(String.format(SEED_EXPANSION_UNAVAILABLE_EXCEPTION, CIPHER_ALGORITHM), e);
+        }
+        this.position = 0;
+    }
+}
@@ -0,0 +1,107 @@
+package utils.operations;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static utils.Constants.INCORRECT_STANDARD_DEVIATION_EXCEPTION;
+
+/**
+ * A sampler of the discrete Gaussian distribution centered at zero with standard deviation sigma,
+ * truncated to the values with absolute value not greater than TAIL_CUT * sigma.
+ * The sampler uses a cumulative distribution table of the absolute value in 63 bit fixed point precision:
+ * a uniform 63 bit value is compared with every entry of the table and the absolute value of the sample
+ * is the number of entries not greater than it, the sign is taken from one additional random bit.
+ * All entries are compared without branches regardless of the value, so the time of a sample does not depend on it.
+ */
+public class DiscreteGaussianSampler {
+
+    public static final double TAIL_CUT = 6;
+    // the largest supported standard deviation, so that the samples fit an int and the table stays small
+    public static final double MAX_STANDARD_DEVIATION = 1 << 16;
+
+    private final double standardDeviation;
+    private final int bound;
+    // cumulativeTable[k] = 2^63 * P(|X| <= k) for k in [0, bound), P(|X| <= bound) being 1
+    private final long[] cumulativeTable;
+
+    /**
+     * @throws IllegalArgumentException if the standard deviation is not positive or greater than MAX_STANDARD_DEVIATION.
+     */
+    public DiscreteGaussianSampler(double standardDeviation) {
+        if(!(standardDeviation > 0 && standardDeviation <= MAX_STANDARD_DEVIATION)) {
+            throw new IllegalArgumentException(String.format(INCORRECT_STANDARD_DEVIATION_EXCEPTION,
+                    standardDeviation, MAX_STANDARD_DEVIATION));
+        }
+
+        this.standardDeviation = standardDeviation;
+        this.bound = (int) Math.ceil(TAIL_CUT * standardDeviation);
+        this.cumulativeTable = initializeCumulativeTable();
+    }
+
+    /**
+     * The probability of |X| = k is proportional to exp(-k^2/(2*sigma^2)), doubled for k != 0 to account for both signs.
+     */
+    private long[] initializeCumulativeTable() {
+        double[] weights = new double[bound + 1];
+        double total = 0;
+
+        for (int k = 0; k <= bound; k++) {
+            weights[k] = (k == 0 ? 1 : 2) * Math.exp(-(double) k * k / (2 * standardDeviation * standardDeviation));
+            total += weights[k];
+        }
+
+        long[] table = new long[bound];
+        double cumulative = 0;
+
+        for (int k = 0; k < bound; k++) {
+            cumulative += weights[k];
+            table[k] = (long) Math.min(Math.scalb(cumulative / total, Long.SIZE - 1), Long.MAX_VALUE);
+        }
+
+        return table;
+    }
+
+    public int sample(Random random) {
+        long bits = random.nextLong();
+        long uniform = bits >>> 1;
+
+        int magnitude = 0;
+        for (long entry : cumulativeTable) {
+            // 1 exactly when uniform >= entry, both values being non negative
+            magnitude += (int) ((entry - 1 - uniform) >>> (Long.SIZE - 1));
+        }
+
+        int sign = (int) (bits & 1);
+        return magnitude * (1 - 2 * sign);
+    }
+
+    /**
+     * Fills the array with independent samples.
+     */
+    public void sample(int[] samples, Random random) {
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = sample(random);
+        }
+    }
+
+    public BigInteger[] sample(int numberOfSamples, Random random) {
+        BigInteger[] samples = new BigInteger[numberOfSamples];
+
+        for (int i = 0; i < numberOfSamples; i++) {
+            samples[i] = BigInteger.valueOf(sample(random));
+        }
+
+        return samples;
+    }
+
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    /**
+     * Returns the largest absolute value of a sample.
+     */
+    public int getBound() {
+        return bound;
+    }
+}
@@ -2,43 +2,52 @@ package utils.operations;
 
 import org.apache.commons.math3.complex.Complex;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static utils.Constants.INCORRECT_BINOMIAL_PARAMETER_EXCEPTION;
+import static utils.Constants.INCORRECT_HAMMING_WEIGHT_EXCEPTION;
 
 /**
  * A class encapsulating functionality for random sampling from different distributions
+ * The methods without an explicit generator sample with the CounterModeGenerator of the calling thread,
+ * so concurrent callers do not contend for a shared generator.
  */
 public class SamplingOperations {
-    private static final Random randomGenerator = new Random();
+    public static final int MAX_BINOMIAL_PARAMETER = 32;
+    // the values in [-MAX_BINOMIAL_PARAMETER, MAX_BINOMIAL_PARAMETER], shared by all small samples instead of new instances
+    private static final BigInteger[] SMALL_VALUES = initializeSmallValues();
+    private static final BigInteger MINUS_ONE = BigInteger.ONE.negate();
+    // the table of each standard deviation is computed once and shared, since the samplers are immutable
+    private static final Map<Double, DiscreteGaussianSampler> gaussianSamplers = new ConcurrentHashMap<>();
 
 
     /**
-     * Picks a given number of values from a normal distribution in given bound.
-     *
-     * A more complex logic is applied to ensure that the distribution of generated values is uniform
-     * across the entire range even for wider range
-     * by first generating a random value with bit length of the range
-     * then adjusting these values to fall within the desired range
+     * Picks a given number of values uniformly distributed in the range [lowerBound, upperBound).
+     * The values are sampled by rejection, so unlike a reduction of a random value of the bit length of the range,
+     * every value of the range is equally likely.
      */
     public static BigInteger[] normalSampling(BigInteger lowerBound, BigInteger upperBound, int numberOfSamples) {
-
-        //TODO refactor and find usage of maths libraries - Apache commons/ Big Maths/ JScience/ matlab/scilab for Java
         if(upperBound.compareTo(lowerBound)<0) {
             throw new IllegalArgumentException("Upper bound must be greater than or equal to lower bound");
         }
 
-        BigInteger[] samples = new BigInteger[numberOfSamples];
         BigInteger range = upperBound.subtract(lowerBound);
-        int bitLength = upperBound.bitLength();
-
-        for (int i = 0; i < numberOfSamples; i++) {
-            BigInteger result = new BigInteger(bitLength, randomGenerator);
-            if (result.compareTo(range) >= 0) {
-                result = result.subtract(range).add(lowerBound);
-            } else if (result.compareTo(lowerBound) < 0) {
-                result = result.add(lowerBound);
-            }
 
-            samples[i] = result;
+        if(range.signum() == 0) {
+            BigInteger[] samples = new BigInteger[numberOfSamples];
+            Arrays.fill(samples, lowerBound);
+            return samples;
+        }
+
+        BigInteger[] samples = CounterModeGenerator.current().nextUniform(range, numberOfSamples);
+
+        if(lowerBound.signum() != 0) {
+            for (int i = 0; i < numberOfSamples; i++) {
+                samples[i] = samples[i].add(lowerBound);
+            }
         }
         return samples;
     }
@@ -49,21 +58,118 @@ public class SamplingOperations {
      *
      */
     public static BigInteger[] triangleSample(int numberOfSamples) {
-        BigInteger[] samples = new BigInteger[numberOfSamples];
+        return triangleSample(numberOfSamples, CounterModeGenerator.current());
+    }
 
-        for(int i =0; i<numberOfSamples; i++) {
-            int value = randomGenerator.nextInt(4);
+    /**
+     * Samples from the discrete triangle distribution with a provided generator,
+     * e.g. a generator owned by the calling thread, so that concurrent callers do not contend for the shared one.
+     */
+    public static BigInteger[] triangleSample(int numberOfSamples, Random random) {
+        byte[] samples = new byte[numberOfSamples];
+        ternarySample(samples, random);
+        return toBigIntegers(samples);
+    }
 
-            if(value == 0) {
-                samples[i] = new BigInteger("-1");
-            } else if (value == 1) {
-                samples[i] = BigInteger.ONE;
-            } else {
-                samples[i] = BigInteger.ZERO;
+    /**
+     * Fills the array with samples from the discrete triangle distribution.
+     * Each coefficient is the difference of two random bits, so a single 64 bit value gives 32 coefficients without branches.
+     */
+    public static void ternarySample(byte[] samples, Random random) {
+        for (int i = 0; i < samples.length; i += Long.SIZE / 2) {
+            long bits = random.nextLong();
+            int count = Math.min(Long.SIZE / 2, samples.length - i);
+
+            for (int j = 0; j < count; j++) {
+                samples[i + j] = (byte) ((bits & 1) - ((bits >>> 1) & 1));
+                bits >>>= 2;
             }
         }
+    }
 
-        return samples;
+    /**
+     * Samples from the centered binomial distribution with parameter eta - the difference of the number of ones
+     * in two groups of eta random bits. The values are in [-eta, eta] with variance eta/2.
+     */
+    public static BigInteger[] centeredBinomialSample(int numberOfSamples, int eta) {
+        return centeredBinomialSample(numberOfSamples, eta, CounterModeGenerator.current());
+    }
+
+    public static BigInteger[] centeredBinomialSample(int numberOfSamples, int eta, Random random) {
+        byte[] samples = new byte[numberOfSamples];
+        centeredBinomialSample(samples, eta, random);
+        return toBigIntegers(samples);
+    }
+
+    /**
+     * Fills the array with samples from the centered binomial distribution with parameter eta.
+     * Each 64 bit value gives 64/(2*eta) coefficients, counted with bit count instead of one bit at a time.
+     *
+     * @throws IllegalArgumentException if eta is not in the range [1, MAX_BINOMIAL_PARAMETER].
+     */
+    public static void centeredBinomialSample(byte[] samples, int eta, Random random) {
+        if(eta < 1 || eta > MAX_BINOMIAL_PARAMETER) {
+            throw new IllegalArgumentException(String.format(INCORRECT_BINOMIAL_PARAMETER_EXCEPTION, eta, MAX_BINOMIAL_PARAMETER));
+        }
+
+        int bitsPerSample = 2 * eta;
+        int samplesPerValue = Long.SIZE / bitsPerSample;
+        long mask = -1L >>> (Long.SIZE - eta);
+
+        for (int i = 0; i < samples.length; i += samplesPerValue) {
+            long bits = random.nextLong();
+            int count = Math.min(samplesPerValue, samples.length - i);
+
+            for (int j = 0; j < count; j++) {
+                samples[i + j] = (byte) (Long.bitCount(bits & mask) - Long.bitCount((bits >>> eta) & mask));
+                // shifted in two steps, since a single shift by 64 for eta = 32 would leave the bits unchanged
+                bits >>>= bitsPerSample - 1;
+                bits >>>= 1;
+            }
+        }
+    }
+
+    /**
+     * Samples from the discrete Gaussian distribution with the given standard deviation, see DiscreteGaussianSampler.
+     */
+    public static BigInteger[] gaussianSample(int numberOfSamples, double standardDeviation) {
+        return gaussianSample(numberOfSamples, standardDeviation, CounterModeGenerator.current());
+    }
+
+    public static BigInteger[] gaussianSample(int numberOfSamples, double standardDeviation, Random random) {
+        return getGaussianSampler(standardDeviation).sample(numberOfSamples, random);
+    }
+
+    /**
+     * Returns the shared sampler for the given standard deviation.
+     *
+     * @throws IllegalArgumentException if the standard deviation is not supported by DiscreteGaussianSampler.
+     */
+    public static DiscreteGaussianSampler getGaussianSampler(double standardDeviation) {
+        return gaussianSamplers.computeIfAbsent(standardDeviation, DiscreteGaussianSampler::new);
+    }
+
+    /**
+     * Converts small samples to BigInteger values, reusing the same instance for equal values.
+     */
+    public static BigInteger[] toBigIntegers(byte[] samples) {
+        BigInteger[] result = new BigInteger[samples.length];
+
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = SMALL_VALUES[samples[i] + MAX_BINOMIAL_PARAMETER];
+        }
+
+        return result;
+    }
+
+    private static BigInteger[] initializeSmallValues() {
+        BigInteger[] values = new BigInteger[2 * MAX_BINOMIAL_PARAMETER + 1];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = BigInteger.valueOf(i - MAX_BINOMIAL_PARAMETER);
+        }
+
+        return values;
     }
 
     /**
@@ -72,38 +178,59 @@ public class SamplingOperations {
      * @param hammingWeight the number of nonzero elements in the result
      */
     public static BigInteger[] hammingWeightSample(int numberOfSamples, int hammingWeight) {
+        return hammingWeightSample(numberOfSamples, hammingWeight, CounterModeGenerator.current());
+    }
+
+    /**
+     * Generates an array with exactly hammingWeight nonzero elements from [-1, 1] with a provided generator,
+     * all other elements being zero. Indices which are already nonzero are drawn again.
+     *
+     * @throws IllegalArgumentException if the hamming weight is negative or greater than the number of samples.
+     */
+    public static BigInteger[] hammingWeightSample(int numberOfSamples, int hammingWeight, Random random) {
+        if(hammingWeight < 0 || hammingWeight > numberOfSamples) {
+            throw new IllegalArgumentException(String.format(INCORRECT_HAMMING_WEIGHT_EXCEPTION, hammingWeight, numberOfSamples));
+        }
+
         BigInteger[] samples = new BigInteger[numberOfSamples];
+        Arrays.fill(samples, BigInteger.ZERO);
 
         while (hammingWeight > 0) {
-            int randomIndex = randomGenerator.nextInt(numberOfSamples);
-
-            if(samples[randomIndex] == null) {
-                int randomValue = randomGenerator.nextInt(2);
+            int randomIndex = random.nextInt(numberOfSamples);
 
-                if(randomValue == 0) {
-                    samples[randomIndex] = new BigInteger("-1");
-                } else {
-                    samples[randomIndex] = BigInteger.ONE;
-                }
+            if(samples[randomIndex].signum() == 0) {
+                samples[randomIndex] = random.nextBoolean() ? BigInteger.ONE : MINUS_ONE;
+                hammingWeight--;
             }
-
-            hammingWeight--;
         }
 
         return samples;
     }
 
+    /**
+     * Deterministically expands a seed into values uniformly distributed in [0, modulus).
+     * The seed is the key of a CounterModeGenerator and the values are sampled from its stream by rejection,
+     * so the values are unbiased and the same seed always gives the same values.
+     *
+     * @param seed a seed of CounterModeGenerator.SEED_BYTE_LENGTH bytes, e.g. from CounterModeGenerator.generateSeed().
+     * @throws IllegalArgumentException if the seed is not of the expected length.
+     */
+    public static BigInteger[] uniformSampleFromSeed(byte[] seed, BigInteger modulus, int numberOfSamples) {
+        return new CounterModeGenerator(seed).nextUniform(modulus, numberOfSamples);
+    }
+
     /**
      * Initializes vector with complex values with real and imaginary parts in the range [0,1)
      *
      */
 
     public static Complex[] complexVectorSample(int length) {
+        Random random = CounterModeGenerator.current();
         Complex[] result = new Complex[length];
 
         for (int i = 0; i < length; i++) {
-            double realPart = randomGenerator.nextDouble(1);
-            double imaginaryPart = randomGenerator.nextDouble(1);
+            double realPart = random.nextDouble(1);
+            double imaginaryPart = random.nextDouble(1);
 
             result[i] = new Complex(realPart, imaginaryPart);
         }
@@ -19,6 +19,7 @@ public class NumberTheoreticTransform {
     private BigInteger[] powersOfRootOfUnity;
     private BigInteger[] inversePowersOfRootsOfUnity;
     private BigInteger[] reversedBits;
+    private BigInteger inversePolynomialDegree;
 
     /**
      * Initializes an instance of the class
@@ -61,6 +62,9 @@ public class NumberTheoreticTransform {
             reversedBits[i] = AlgebraicOperations.takeRemainder(BitOperations.bitReversal(BigInteger.valueOf(i), width), modulus);
         }
 
+        // computed once, since the primality check of the modulus is too expensive to repeat on every inverse transform
+        inversePolynomialDegree = AlgebraicOperations.modInverseWithPrimeModulus(this.polynomialDegree, this.modulus);
+
     }
 
     public BigInteger[] getPowersOfRootOfUnity() {
@@ -71,6 +75,10 @@ public class NumberTheoreticTransform {
         return inversePowersOfRootsOfUnity;
     }
 
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
     /**
      * Runs an iterated version of the butterfly  transformation with time complexity O(n*log(n))
      */
@@ -131,7 +139,6 @@ public class NumberTheoreticTransform {
         }
 
         BigInteger [] toScaleDown = runNumberTheoreticTransform(toTransform, this.inversePowersOfRootsOfUnity);
-        BigInteger inversePolynomialDegree = AlgebraicOperations.modInverseWithPrimeModulus(this.polynomialDegree, this.modulus);
 
         BigInteger[] result = new BigInteger[polynomialDegree.intValue()];
 
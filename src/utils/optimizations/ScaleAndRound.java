@@ -0,0 +1,107 @@
+package utils.optimizations;
+
+import java.math.BigInteger;
+
+import static utils.Constants.INCORRECT_SCALING_FRACTION_EXCEPTION;
+
+/**
+ * A class encapsulating functionality for computing round(t*x/q) exactly with integer arithmetic,
+ * where t < q are fixed, e.g. the plaintext and ciphertext moduli. Ties are rounded towards zero,
+ * which is the rounding of the previous decimal division by q/t.
+ * For q < 2^62 the values are processed as longs with a precomputed fixed point approximation
+ * mu = floor(2^64 * t / q) of the fraction: the estimate floor(x * mu / 2^64) of floor(t*x/q) is off by at most one,
+ * and the remainder t*x - estimate*q is small enough to be computed and corrected in a long.
+ * Values that do not fit in a long and larger moduli are handled with a single BigInteger division.
+ */
+public class ScaleAndRound {
+
+    private static final int MAXIMAL_FAST_MODULUS_BIT_LENGTH = 62;
+
+    private BigInteger numerator;
+    private BigInteger denominator;
+    private boolean fastPath;
+    private long numeratorLong;
+    private long denominatorLong;
+    private long fraction;
+
+    /**
+     * @param numerator the numerator t of the scaling fraction.
+     * @param denominator the denominator q of the scaling fraction.
+     * @throws IllegalArgumentException if the numerator is not positive or not less than the denominator.
+     */
+    public ScaleAndRound(BigInteger numerator, BigInteger denominator) {
+        if(numerator.signum() <= 0 || numerator.compareTo(denominator) >= 0) {
+            throw new IllegalArgumentException(String.format(INCORRECT_SCALING_FRACTION_EXCEPTION, numerator, denominator));
+        }
+
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.fastPath = denominator.bitLength() <= MAXIMAL_FAST_MODULUS_BIT_LENGTH;
+
+        if(fastPath) {
+            this.numeratorLong = numerator.longValueExact();
+            this.denominatorLong = denominator.longValueExact();
+            // the fraction is less than one, so the result fits in 64 unsigned bits
+            this.fraction = numerator.shiftLeft(64).divide(denominator).longValue();
+        }
+    }
+
+    /**
+     * Computes round(t*x/q) for each of the values.
+     *
+     * @param values arbitrary integers, e.g. coefficients in the range [0, q) or exact products of polynomials.
+     * @return the scaled and rounded values, not reduced with respect to any modulus.
+     */
+    public BigInteger[] apply(BigInteger[] values) {
+        BigInteger[] result = new BigInteger[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            result[i] = apply(values[i]);
+        }
+
+        return result;
+    }
+
+    public BigInteger apply(BigInteger value) {
+        if(fastPath && value.bitLength() < Long.SIZE - 1) {
+            long magnitude = Math.abs(value.longValue());
+            long rounded = applyNonNegative(magnitude);
+            return BigInteger.valueOf(value.signum() < 0 ? -rounded : rounded);
+        }
+
+        BigInteger[] quotientAndRemainder = value.abs().multiply(numerator).divideAndRemainder(denominator);
+        BigInteger rounded = quotientAndRemainder[1].shiftLeft(1).compareTo(denominator) > 0
+                ? quotientAndRemainder[0].add(BigInteger.ONE)
+                : quotientAndRemainder[0];
+
+        return value.signum() < 0 ? rounded.negate() : rounded;
+    }
+
+    /**
+     * Computes round(t*x/q) for 0 <= x < 2^62 and q < 2^62.
+     */
+    private long applyNonNegative(long value) {
+        long estimate = unsignedMultiplyHigh(value, fraction);
+        // the exact remainder is in [0, 2q), so it is computed correctly modulo 2^64
+        long remainder = value * numeratorLong - estimate * denominatorLong;
+
+        if(remainder >= denominatorLong) {
+            estimate++;
+            remainder -= denominatorLong;
+        }
+
+        return 2 * remainder > denominatorLong ? estimate + 1 : estimate;
+    }
+
+    private static long unsignedMultiplyHigh(long nonNegative, long unsigned) {
+        return Math.multiplyHigh(nonNegative, unsigned) + ((unsigned >> 63) & nonNegative);
+    }
+
+    public BigInteger getNumerator() {
+        return numerator;
+    }
+
+    public BigInteger getDenominator() {
+        return denominator;
+    }
+}
@@ -1,5 +1,7 @@
 package utils.structures;
 
+import utils.optimizations.ChineseRemainderTheorem;
+
 import java.io.Serializable;
 import java.math.BigInteger;
 
@@ -7,16 +9,21 @@ import java.math.BigInteger;
  * A wrapper class for ciphertext from RLWE based homomorphic scheme
  * holds:
  *      a tuple of polynomials representing an encrypted message from Zq[X]/(X^d+1),
+ *      optionally a third polynomial, when the ciphertext is the result of a multiplication that is not yet relinearized,
  *      scaling factor which is the ratio between ciphertext space modulus and plaintext space modulus,
  *      and modulus q
+ * The evaluation form of the polynomial tuple is computed lazily on first use and memoized,
+ * so that a ciphertext used as an operand in many multiplications is transformed only once.
  */
 public class Ciphertext implements Serializable {
 
     private Polynomial encryptionPolynomial; // c0
     private Polynomial additionalComponent; //c1
+    private Polynomial quadraticComponent; //c2, multiplied by the squared secret on decryption, null for ciphertexts of size 2
     private BigInteger scalingFactor;
     private BigInteger modulus;
     private boolean decryptInSmallDomain;
+    private transient volatile TransformedPolynomial[] transformedComponents;
 
     public Ciphertext(Polynomial encryptionPolynomial,
                       Polynomial additionalComponent,
@@ -40,6 +47,20 @@ public class Ciphertext implements Serializable {
         this.decryptInSmallDomain = decryptInSmallDomain;
     }
 
+    /**
+     * Initializes a ciphertext of size 3 (c0, c1, c2), which decrypts with c0 + c1*s + c2*s^2.
+     * Such ciphertexts are the result of multiplication without relinearization.
+     */
+    public Ciphertext(Polynomial encryptionPolynomial,
+                      Polynomial additionalComponent,
+                      Polynomial quadraticComponent,
+                      BigInteger scalingFactor,
+                      BigInteger modulus,
+                      boolean decryptInSmallDomain) {
+        this(encryptionPolynomial, additionalComponent, scalingFactor, modulus, decryptInSmallDomain);
+        this.quadraticComponent = quadraticComponent;
+    }
+
     public Polynomial getEncryptionPolynomial() {
         return encryptionPolynomial;
     }
@@ -48,6 +69,55 @@ public class Ciphertext implements Serializable {
         return additionalComponent;
     }
 
+    /**
+     * @return the third component c2 or null if the ciphertext is of size 2.
+     */
+    public Polynomial getQuadraticComponent() {
+        return quadraticComponent;
+    }
+
+    /**
+     * @return the number of polynomials in the ciphertext - 2 or 3.
+     */
+    public int getSize() {
+        return quadraticComponent == null ? 2 : 3;
+    }
+
+    /**
+     * Returns the component on given index - c0, c1 or c2.
+     *
+     * @throws IndexOutOfBoundsException if the index is not less than the size of the ciphertext.
+     */
+    public Polynomial getComponent(int index) {
+        if (index < 0 || index >= getSize()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        return index == 0 ? encryptionPolynomial : index == 1 ? additionalComponent : quadraticComponent;
+    }
+
+    /**
+     * Returns all parts of the ciphertext in evaluation form with respect to the given primes.
+     * Since the ciphertext is immutable, the memoized result is invalidated only if different primes are requested.
+     * The result is published through a volatile field, so the instance can be safely shared between threads -
+     * concurrent first calls may both perform the transformation, but they compute and publish equal values.
+     * A copy of the memoized array is returned, so the callers cannot modify the cached components.
+     */
+    public TransformedPolynomial[] getTransformedComponents(ChineseRemainderTheorem chineseRemainderTheorem) {
+        TransformedPolynomial[] result = this.transformedComponents;
+
+        if (result == null || !result[0].isTransformedWith(chineseRemainderTheorem)) {
+            result = new TransformedPolynomial[getSize()];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = TransformedPolynomial.forwardTransform(getComponent(i), chineseRemainderTheorem);
+            }
+            this.transformedComponents = result;
+        }
+
+        return result.clone();
+    }
+
     public BigInteger getScalingFactor() {
         return scalingFactor;
     }
@@ -56,14 +126,19 @@ public class Ciphertext implements Serializable {
         return modulus;
     }
 
+    public boolean isDecryptInSmallDomain() {
+        return decryptInSmallDomain;
+    }
+
 
     @Override
     public String toString() {
         return "Ciphertext = ( " +
                  encryptionPolynomial +
                 ", " + additionalComponent +
+                (quadraticComponent != null ? ", " + quadraticComponent : "") +
                 " ), scaling factor =" + scalingFactor +
                 ", modulus =" + modulus +
                 '}';
     }
-}
\ No newline at end of file
+}
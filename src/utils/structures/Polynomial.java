@@ -19,6 +19,7 @@ import utils.operations.RoundingOperations;
 import utils.optimizations.ChineseRemainderTheorem;
 import utils.optimizations.FastFourierTransform;
 import utils.optimizations.NumberTheoreticTransform;
+import utils.optimizations.ScaleAndRound;
 
 import static utils.Constants.*;
 
@@ -287,16 +288,16 @@ public class Polynomial implements Serializable {
 
         int reconstructedCoefficientsLength = this.polynomialDegree;
         BigInteger[] coefficients = new BigInteger[reconstructedCoefficientsLength];
-        List<BigInteger> deconstructedValues = new ArrayList<>();
 
         IntStream.range(0, reconstructedCoefficientsLength)
                 .parallel()
                 .forEach(i -> {
-                    deconstructedValues.clear();
+                    // each coefficient uses its own array, since the reconstruction runs concurrently
+                    BigInteger[] deconstructedValues = new BigInteger[primesLength];
                     for (int j = 0; j < primesLength; j++) {
-                        deconstructedValues.add(crtProducts[j].getCoefficients()[i]);
+                        deconstructedValues[j] = crtProducts[j].getCoefficients()[i];
                     }
-                    coefficients[i] = chineseRemainderTheorem.reconstruct(deconstructedValues.toArray(BigInteger[]::new));
+                    coefficients[i] = chineseRemainderTheorem.reconstruct(deconstructedValues);
                 });
 
         return new Polynomial(this.polynomialDegree, coefficients)
@@ -495,6 +496,26 @@ public class Polynomial implements Serializable {
         return new Polynomial(polynomialDegree, scalarDivisionCoefficients);
     }
 
+    /**
+     * Multiplies each coefficient by the fraction t/q of the given instance and rounds the result,
+     * using exact integer arithmetic instead of a division by the decimal approximation of q/t,
+     * then applies modular reduction if modulus is provided.
+     *
+     * @param scaling holds the fraction and the constants precomputed for it.
+     * @param modulus to apply the reduction with respect to. Can be null.
+     */
+    public Polynomial scaleAndRound(ScaleAndRound scaling, BigInteger modulus) {
+        BigInteger[] scaledCoefficients = scaling.apply(this.coefficients);
+
+        if(modulus != null) {
+            for (int i = 0; i < scaledCoefficients.length; i++) {
+                scaledCoefficients[i] = scaledCoefficients[i].mod(modulus);
+            }
+        }
+
+        return new Polynomial(this.polynomialDegree, scaledCoefficients);
+    }
+
     /**
      * Performs modular reduction with respect to given modulus
      */
@@ -525,6 +546,101 @@ public class Polynomial implements Serializable {
         return result;
     }
 
+    /**
+     * Decomposes the coefficients of a polynomial into base 2^bitCount using only shifts and masks.
+     * The coefficients must be non negative, e.g. already reduced modulo q.
+     * When balanced decomposition is applied, each digit except the last one is taken in the range [-2^(bitCount-1), 2^(bitCount-1))
+     * and the difference is carried to the next digit, which halves the size of the digits.
+     * In that case one more level than the unbalanced decomposition may be needed to hold the final carry.
+     * Coefficients that fit in a long value are decomposed over a long array, larger ones fall back to BigInteger shifts.
+     *
+     * @param bitCount number of bits w of each digit, the base being 2^w.
+     * @param levels the number of digits each coefficient is decomposed to.
+     * @param balanced whether the digits should be centered around zero.
+     * @return an array of polynomials, the polynomial on index i holding the i-th digit of each coefficient.
+     * @throws IllegalArgumentException if the bit count is not in the range [1, 62].
+     */
+    public Polynomial[] decomposeCoefficientsPowerOfTwo(int bitCount, int levels, boolean balanced) {
+        if(bitCount < 1 || bitCount > 62) {
+            throw new IllegalArgumentException(String.format(INCORRECT_DECOMPOSITION_BIT_COUNT_EXCEPTION, bitCount, 62));
+        }
+
+        BigInteger[][] digits = new BigInteger[levels][this.polynomialDegree];
+        long mask = (1L << bitCount) - 1;
+        long half = 1L << (bitCount - 1);
+
+        for (int j = 0; j < this.polynomialDegree; j++) {
+            if(this.coefficients[j].bitLength() < Long.SIZE - 1) {
+                long value = this.coefficients[j].longValueExact();
+
+                for (int i = 0; i < levels; i++) {
+                    long digit = i == levels - 1 ? value : value & mask;
+                    value >>= bitCount;
+
+                    if(balanced && i != levels - 1 && digit >= half) {
+                        digit -= mask + 1;
+                        value++;
+                    }
+                    digits[i][j] = BigInteger.valueOf(digit);
+                }
+            } else {
+                BigInteger value = this.coefficients[j];
+                BigInteger bigMask = BigInteger.valueOf(mask);
+
+                for (int i = 0; i < levels; i++) {
+                    BigInteger digit = i == levels - 1 ? value : value.and(bigMask);
+                    value = value.shiftRight(bitCount);
+
+                    if(balanced && i != levels - 1 && digit.longValueExact() >= half) {
+                        digit = digit.subtract(bigMask.add(BigInteger.ONE));
+                        value = value.add(BigInteger.ONE);
+                    }
+                    digits[i][j] = digit;
+                }
+            }
+        }
+
+        Polynomial[] result = new Polynomial[levels];
+
+        for (int i = 0; i < levels; i++) {
+            result[i] = new Polynomial(this.polynomialDegree, digits[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Applies the Galois automorphism X -> X^g of the ring Zq[X]/(X^d+1), where g is odd.
+     * The coefficient of X^i is moved to X^(i*g mod 2d), with its sign changed if i*g mod 2d is not less than d, since X^d = -1.
+     *
+     * @param galoisElement the odd exponent g in the range [1, 2d).
+     * @param modulus the modulus q, negated coefficients are taken modulo q. Can be null.
+     * @return the polynomial a(X^g).
+     * @throws IllegalArgumentException if the Galois element is not odd or not in the range [1, 2d).
+     */
+    public Polynomial applyGaloisAutomorphism(int galoisElement, BigInteger modulus) {
+        int cyclotomicOrder = 2 * this.polynomialDegree;
+
+        if(galoisElement % 2 == 0 || galoisElement < 1 || galoisElement >= cyclotomicOrder) {
+            throw new IllegalArgumentException(String.format(INCORRECT_GALOIS_ELEMENT_EXCEPTION, galoisElement, cyclotomicOrder));
+        }
+
+        BigInteger[] result = new BigInteger[this.polynomialDegree];
+
+        for (int i = 0; i < this.polynomialDegree; i++) {
+            int index = (int) ((long) i * galoisElement % cyclotomicOrder);
+
+            if(index < this.polynomialDegree) {
+                result[index] = this.coefficients[i];
+            } else {
+                BigInteger negated = this.coefficients[i].negate();
+                result[index - this.polynomialDegree] = modulus == null ? negated : negated.mod(modulus);
+            }
+        }
+
+        return new Polynomial(this.polynomialDegree, result);
+    }
+
     /**
      * Evaluates the polynomial with respect to given x.
      * @return  the evaluation of P(x) where P is the polynomial as function and x is the input value.
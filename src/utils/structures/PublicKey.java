@@ -1,6 +1,8 @@
 package utils.structures;
 
 
+import utils.optimizations.ChineseRemainderTheorem;
+
 import java.io.Serializable;
 
 /**
@@ -8,11 +10,13 @@ import java.io.Serializable;
  * An instance of the class is needed whenever there is an operation that needs to be performed on the ciphertext.
  * Holds:
  *      a tuple of polynomials corresponding to the two parts of the public key
+ *      the two parts of the key in evaluation form, computed once on first use and not serialized
  */
 public class PublicKey implements Serializable {
 
     private Polynomial pk0;
     private Polynomial pk1;
+    private transient volatile TransformedPolynomial[] transformedKey;
 
     public PublicKey(Polynomial pk0, Polynomial pk1) {
         this.pk0 = pk0;
@@ -27,6 +31,24 @@ public class PublicKey implements Serializable {
         return pk1;
     }
 
+    /**
+     * Returns both parts of the key in evaluation form with respect to the given primes.
+     * The transformation is performed only once, every following call with the same primes returns a copy of the cached result.
+     */
+    public TransformedPolynomial[] getTransformedKey(ChineseRemainderTheorem chineseRemainderTheorem) {
+        TransformedPolynomial[] result = this.transformedKey;
+
+        if (result == null || !result[0].isTransformedWith(chineseRemainderTheorem)) {
+            result = new TransformedPolynomial[] {
+                    TransformedPolynomial.forwardTransform(pk0, chineseRemainderTheorem),
+                    TransformedPolynomial.forwardTransform(pk1, chineseRemainderTheorem)
+            };
+            this.transformedKey = result;
+        }
+
+        return result.clone();
+    }
+
     @Override
     public String toString() {
         return "PublicKey " +
@@ -34,4 +56,4 @@ public class PublicKey implements Serializable {
                 ", " + pk1 +
                 ')';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package utils.structures;
+
+import utils.operations.SamplingOperations;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+
+/**
+ * A compressed form of a ciphertext produced by secret key encryption.
+ * The second part of such a ciphertext is a uniformly random polynomial a, so instead of the polynomial
+ * only the short seed it is expanded from is kept, which halves the size of the serialized ciphertext.
+ * holds:
+ *      the first part of the ciphertext c0 = -a*s + e + delta*m,
+ *      the seed from which the second part a is expanded,
+ *      scaling factor and modulus q as in the expanded ciphertext
+ */
+public class SeededCiphertext implements Serializable {
+
+    private Polynomial encryptionPolynomial; // c0
+    private byte[] seed;
+    private BigInteger scalingFactor;
+    private BigInteger modulus;
+
+    public SeededCiphertext(Polynomial encryptionPolynomial, byte[] seed, BigInteger scalingFactor, BigInteger modulus) {
+        this.encryptionPolynomial = encryptionPolynomial;
+        this.seed = seed.clone();
+        this.scalingFactor = scalingFactor;
+        this.modulus = modulus;
+    }
+
+    /**
+     * Expands the seed into the second part of the ciphertext.
+     *
+     * @return a ciphertext of size 2, which can be used in all homomorphic operations.
+     */
+    public Ciphertext expand() {
+        int polynomialDegree = this.encryptionPolynomial.getPolynomialDegree();
+        Polynomial additionalComponent = new Polynomial(polynomialDegree,
+                SamplingOperations.uniformSampleFromSeed(this.seed, this.modulus, polynomialDegree));
+
+        return new Ciphertext(this.encryptionPolynomial, additionalComponent, this.scalingFactor, this.modulus);
+    }
+
+    public Polynomial getEncryptionPolynomial() {
+        return encryptionPolynomial;
+    }
+
+    public byte[] getSeed() {
+        return seed.clone();
+    }
+
+    public BigInteger getScalingFactor() {
+        return scalingFactor;
+    }
+
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    @Override
+    public String toString() {
+        return "SeededCiphertext = ( " +
+                encryptionPolynomial +
+                " ), scaling factor =" + scalingFactor +
+                ", modulus =" + modulus +
+                '}';
+    }
+}
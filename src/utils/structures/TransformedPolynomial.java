@@ -0,0 +1,190 @@
+package utils.structures;
+
+import utils.optimizations.ChineseRemainderTheorem;
+import utils.optimizations.NumberTheoreticTransform;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+import static utils.Constants.*;
+
+/**
+ * A class representing an element of the ring Z[X]/(X^d+1) in evaluation form.
+ * The polynomial is split into residues with respect to the primes of a ChineseRemainderTheorem instance
+ * and each residue is transformed with the Number Theoretic Transform of the corresponding prime.
+ * In this form multiplication and addition are performed component wise,
+ * and as long as the absolute value of the result stays below half of the primes product,
+ * the inverse transformation gives the exact integer result without any modular reduction with respect to q.
+ * Attributes:
+ *              two dimensional array of BigInteger values - the transformed residues for each prime
+ *              array of primes with respect to which the residues are taken
+ *              integer value representing the polynomial degree
+ */
+public class TransformedPolynomial implements Serializable {
+
+    private BigInteger[][] residues;
+    private BigInteger[] primes;
+    private int polynomialDegree;
+
+    public TransformedPolynomial(int polynomialDegree, BigInteger[] primes, BigInteger[][] residues) {
+        if(primes.length != residues.length) {
+            throw new IllegalArgumentException(String.format(NON_MATCHING_NUMBER_OF_RESIDUES_EXCEPTION,
+                    residues.length, primes.length));
+        }
+
+        this.polynomialDegree = polynomialDegree;
+        this.primes = primes;
+        this.residues = residues;
+    }
+
+    /**
+     * Transforms the coefficients of a polynomial in evaluation form with respect to each of the primes.
+     *
+     * @param polynomial the polynomial to be transformed, coefficients may be negative.
+     * @param chineseRemainderTheorem holds the primes and the transformation for each of them.
+     * @return the polynomial in evaluation form.
+     */
+    public static TransformedPolynomial forwardTransform(Polynomial polynomial, ChineseRemainderTheorem chineseRemainderTheorem) {
+        List<NumberTheoreticTransform> transforms = chineseRemainderTheorem.getTheoreticTransformList();
+        BigInteger[] coefficients = polynomial.getCoefficients();
+        BigInteger[][] residues = new BigInteger[transforms.size()][];
+
+        for (int i = 0; i < transforms.size(); i++) {
+            residues[i] = transforms.get(i).forwardTransform(coefficients);
+        }
+
+        return new TransformedPolynomial(polynomial.getPolynomialDegree(), chineseRemainderTheorem.getPrimeNumbers(), residues);
+    }
+
+    /**
+     * Transforms the polynomial back to coefficient form by applying the inverse transformation with respect to each prime
+     * and reconstructing each coefficient with the Chinese Remainder Theorem.
+     *
+     * @return a Polynomial with the exact integer coefficients in the range (-P/2, P/2], where P is the product of the primes.
+     * @throws UnsupportedOperationException if the polynomial was transformed with respect to different primes.
+     */
+    public Polynomial inverseTransform(ChineseRemainderTheorem chineseRemainderTheorem) {
+        checkTransformedWith(chineseRemainderTheorem);
+
+        List<NumberTheoreticTransform> transforms = chineseRemainderTheorem.getTheoreticTransformList();
+        BigInteger[][] inverseResidues = new BigInteger[primes.length][];
+
+        for (int i = 0; i < primes.length; i++) {
+            inverseResidues[i] = transforms.get(i).inverseTransform(residues[i]);
+        }
+
+        BigInteger[] coefficients = new BigInteger[polynomialDegree];
+        BigInteger[] deconstructedValues = new BigInteger[primes.length];
+
+        for (int i = 0; i < polynomialDegree; i++) {
+            for (int j = 0; j < primes.length; j++) {
+                deconstructedValues[j] = inverseResidues[j][i];
+            }
+            coefficients[i] = chineseRemainderTheorem.reconstruct(deconstructedValues);
+        }
+
+        return new Polynomial(polynomialDegree, coefficients)
+                .applySmallModularReduction(chineseRemainderTheorem.getPrimesProduct());
+    }
+
+    /**
+     * Performs component wise multiplication, which corresponds to multiplication in the ring Z[X]/(X^d+1).
+     *
+     * @throws UnsupportedOperationException if the polynomials are not transformed with respect to the same primes.
+     */
+    public TransformedPolynomial multiply(TransformedPolynomial polynomial) {
+        checkCompatibility(polynomial, "multiplication");
+
+        BigInteger[][] result = new BigInteger[primes.length][polynomialDegree];
+
+        for (int i = 0; i < primes.length; i++) {
+            for (int j = 0; j < polynomialDegree; j++) {
+                result[i][j] = this.residues[i][j].multiply(polynomial.residues[i][j]).mod(primes[i]);
+            }
+        }
+
+        return new TransformedPolynomial(polynomialDegree, primes, result);
+    }
+
+    /**
+     * Performs component wise addition, which corresponds to addition in the ring Z[X]/(X^d+1).
+     *
+     * @throws UnsupportedOperationException if the polynomials are not transformed with respect to the same primes.
+     */
+    public TransformedPolynomial add(TransformedPolynomial polynomial) {
+        checkCompatibility(polynomial, "addition");
+
+        BigInteger[][] result = new BigInteger[primes.length][polynomialDegree];
+
+        for (int i = 0; i < primes.length; i++) {
+            for (int j = 0; j < polynomialDegree; j++) {
+                result[i][j] = this.residues[i][j].add(polynomial.residues[i][j]).mod(primes[i]);
+            }
+        }
+
+        return new TransformedPolynomial(polynomialDegree, primes, result);
+    }
+
+    /**
+     * Applies the Galois automorphism X -> X^g in evaluation form. The residues of each prime hold the evaluations
+     * on psi^(2j+1) at index j, and a(X^g) evaluated on psi^(2j+1) is a evaluated on psi^(g(2j+1)),
+     * so the automorphism is the same permutation of the indices for all primes and needs no transformation.
+     *
+     * @param galoisElement the odd exponent g in the range [1, 2d).
+     * @throws IllegalArgumentException if the Galois element is not odd or not in the range [1, 2d).
+     */
+    public TransformedPolynomial applyGaloisAutomorphism(int galoisElement) {
+        int cyclotomicOrder = 2 * polynomialDegree;
+
+        if(galoisElement % 2 == 0 || galoisElement < 1 || galoisElement >= cyclotomicOrder) {
+            throw new IllegalArgumentException(String.format(INCORRECT_GALOIS_ELEMENT_EXCEPTION, galoisElement, cyclotomicOrder));
+        }
+
+        BigInteger[][] result = new BigInteger[primes.length][polynomialDegree];
+
+        for (int j = 0; j < polynomialDegree; j++) {
+            int sourceIndex = (int) (((long) galoisElement * (2 * j + 1) % cyclotomicOrder - 1) / 2);
+
+            for (int i = 0; i < primes.length; i++) {
+                result[i][j] = residues[i][sourceIndex];
+            }
+        }
+
+        return new TransformedPolynomial(polynomialDegree, primes, result);
+    }
+
+    /**
+     * Checks whether the residues are taken with respect to the primes of the given ChineseRemainderTheorem instance.
+     */
+    public boolean isTransformedWith(ChineseRemainderTheorem chineseRemainderTheorem) {
+        BigInteger[] otherPrimes = chineseRemainderTheorem.getPrimeNumbers();
+        return this.primes == otherPrimes || Arrays.equals(this.primes, otherPrimes);
+    }
+
+    private void checkTransformedWith(ChineseRemainderTheorem chineseRemainderTheorem) {
+        if(!isTransformedWith(chineseRemainderTheorem)) {
+            throw new UnsupportedOperationException(String.format(NON_MATCHING_TRANSFORMATION_PRIMES_EXCEPTION,
+                    "inverse transformation"));
+        }
+    }
+
+    private void checkCompatibility(TransformedPolynomial polynomial, String operation) {
+        if(this.polynomialDegree != polynomial.polynomialDegree) {
+            throw new UnsupportedOperationException(String.format(NON_MATCHING_DEGREE_WHILE_PERFORMING_OPERATION, operation));
+        }
+
+        if(this.primes != polynomial.primes && !Arrays.equals(this.primes, polynomial.primes)) {
+            throw new UnsupportedOperationException(String.format(NON_MATCHING_TRANSFORMATION_PRIMES_EXCEPTION, operation));
+        }
+    }
+
+    public BigInteger[] getPrimes() {
+        return primes;
+    }
+
+    public int getPolynomialDegree() {
+        return polynomialDegree;
+    }
+}